@@ -0,0 +1,69 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle.benchmark;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import cz.sickboy.netbeans.checkstyle.CheckstyleViolation;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures collecting the audit events, the first step shared by both the
+ * editor and the task list.
+ *
+ * @author Petr Hejl
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CollectorBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int violations;
+
+    private List<AuditEvent> events;
+
+    @Setup
+    public void setUp () {
+        events = Corpus.createEvents(violations, 1000, "Test.java"); // NOI18N
+    }
+
+    @Benchmark
+    public List<CheckstyleViolation> collect () {
+        CheckstyleViolation.Collector collector = new CheckstyleViolation.Collector();
+        for (AuditEvent event : events) {
+            collector.addError(event);
+        }
+        return collector.getResults();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle.benchmark;
+
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+import cz.sickboy.netbeans.checkstyle.CancellableChecker;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the configuration of the checker with the bundled configuration,
+ * the cost paid for every miss of the checker pool.
+ *
+ * @author Petr Hejl
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConfigureBenchmark {
+
+    private Configuration configuration;
+
+    @Setup
+    public void setUp () throws CheckstyleException {
+        configuration = Corpus.loadSunChecks();
+    }
+
+    @Benchmark
+    public CancellableChecker configure () throws CheckstyleException {
+        CancellableChecker checker = Corpus.createChecker(configuration);
+        checker.destroy();
+        return checker;
+    }
+}
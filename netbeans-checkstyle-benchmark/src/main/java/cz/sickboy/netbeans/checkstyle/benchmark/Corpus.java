@@ -0,0 +1,138 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle.benchmark;
+
+import com.puppycrawl.tools.checkstyle.ConfigurationLoader;
+import com.puppycrawl.tools.checkstyle.ConfigurationLoader.IgnoredModulesOptions;
+import com.puppycrawl.tools.checkstyle.PropertiesExpander;
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+import com.puppycrawl.tools.checkstyle.api.Violation;
+import com.puppycrawl.tools.checkstyle.checks.sizes.LineLengthCheck;
+import cz.sickboy.netbeans.checkstyle.CancellableChecker;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.xml.sax.InputSource;
+
+/**
+ * The synthetic data shared by the benchmarks.
+ *
+ * @author Petr Hejl
+ */
+public final class Corpus {
+
+    private static final String SUN_CHECKS =
+        "cz/sickboy/netbeans/checkstyle/resources/sun_checks.xml"; // NOI18N
+
+    private static final SeverityLevel[] SEVERITIES = {
+        SeverityLevel.ERROR, SeverityLevel.WARNING, SeverityLevel.INFO
+    };
+
+    private Corpus () {
+        super();
+    }
+
+    /**
+     * Loads the configuration bundled with the plugin.
+     *
+     * @return the bundled configuration
+     * @throws CheckstyleException if the configuration can't be loaded
+     */
+    public static Configuration loadSunChecks () throws CheckstyleException {
+        InputStream is = Corpus.class.getClassLoader().getResourceAsStream(SUN_CHECKS);
+        try {
+            return ConfigurationLoader.loadConfiguration(new InputSource(is),
+                new PropertiesExpander(System.getProperties()), IgnoredModulesOptions.OMIT);
+        } finally {
+            try {
+                is.close();
+            } catch (IOException ex) {
+                // nothing to do
+            }
+        }
+    }
+
+    /**
+     * Creates the checker configured the same way the plugin does it.
+     *
+     * @param configuration the checkstyle configuration
+     * @return the configured checker
+     * @throws CheckstyleException if the checker can't be configured
+     */
+    public static CancellableChecker createChecker (Configuration configuration) throws CheckstyleException {
+        CancellableChecker checker = new CancellableChecker(null);
+        checker.setModuleClassLoader(Corpus.class.getClassLoader());
+        checker.configure(configuration);
+        return checker;
+    }
+
+    /**
+     * Creates the source of the class with about the given number of lines.
+     * The code contains the usual problems such as magic numbers, missing
+     * javadoc and long lines.
+     *
+     * @param lines the requested number of lines
+     * @return the source of the class
+     */
+    public static String createSource (int lines) {
+        StringBuilder builder = new StringBuilder(lines * 40);
+        builder.append("package test;\n\n"); // NOI18N
+        builder.append("public class Test {\n\n"); // NOI18N
+        builder.append("    public int field;\n\n"); // NOI18N
+
+        int current = 5;
+        for (int i = 0; current < lines - 1; i++) {
+            builder.append("    public int method").append(i).append(" (int a, int b) {\n"); // NOI18N
+            builder.append("        int result = a * 42 + b;\n"); // NOI18N
+            builder.append("        if (result > 100) {\n"); // NOI18N
+            builder.append("            result = result - 7;\n"); // NOI18N
+            builder.append("        }\n"); // NOI18N
+            builder.append("        String text = \"value of the method number ").append(i) // NOI18N
+                .append(" which is far too long for the line\" + result;\n"); // NOI18N
+            builder.append("        return text.length();\n"); // NOI18N
+            builder.append("    }\n\n"); // NOI18N
+            current += 9;
+        }
+        builder.append("}\n"); // NOI18N
+        return builder.toString();
+    }
+
+    /**
+     * Creates the audit events spread over the given number of lines.
+     *
+     * @param count the number of events
+     * @param lines the number of lines of the file
+     * @param fileName the name of the checked file
+     * @return the audit events
+     */
+    public static List<AuditEvent> createEvents (int count, int lines, String fileName) {
+        List<AuditEvent> events = new ArrayList<AuditEvent>(count);
+        for (int i = 0; i < count; i++) {
+            Violation violation = new Violation(1 + (i % lines), 1, LineLengthCheck.class.getPackage().getName()
+                + ".messages", LineLengthCheck.MSG_KEY, new Object[] {80, 100 + i}, // NOI18N
+                SEVERITIES[i % SEVERITIES.length], null, LineLengthCheck.class, null);
+            events.add(new AuditEvent(Corpus.class, fileName, violation));
+        }
+        return events;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle.benchmark;
+
+import com.puppycrawl.tools.checkstyle.Checker;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.FileText;
+import cz.sickboy.netbeans.checkstyle.CancellableChecker;
+import cz.sickboy.netbeans.checkstyle.CheckstyleViolation;
+import cz.sickboy.netbeans.checkstyle.SourceText;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the check of a single file with an already configured checker.
+ * The file is either read from the disk by checkstyle or passed in memory
+ * as the editor does it. The plain checkstyle checker shows the overhead of
+ * the cancellation support.
+ *
+ * @author Petr Hejl
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProcessBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int lines;
+
+    private CancellableChecker checker;
+
+    private Checker plainChecker;
+
+    private File file;
+
+    private String source;
+
+    @Setup
+    public void setUp () throws CheckstyleException, IOException {
+        checker = Corpus.createChecker(Corpus.loadSunChecks());
+        plainChecker = new Checker();
+        plainChecker.setModuleClassLoader(ProcessBenchmark.class.getClassLoader());
+        plainChecker.configure(Corpus.loadSunChecks());
+        source = Corpus.createSource(lines);
+        file = File.createTempFile("Test", ".java"); // NOI18N
+        Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TearDown
+    public void tearDown () {
+        checker.destroy();
+        plainChecker.destroy();
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    @Benchmark
+    public List<CheckstyleViolation> processFile () throws CheckstyleException {
+        CheckstyleViolation.Collector collector = new CheckstyleViolation.Collector();
+        checker.addListener(collector);
+        try {
+            checker.process(Collections.singletonList(file));
+        } finally {
+            checker.removeListener(collector);
+        }
+        return collector.getResults();
+    }
+
+    @Benchmark
+    public List<CheckstyleViolation> processPlainFile () throws CheckstyleException {
+        CheckstyleViolation.Collector collector = new CheckstyleViolation.Collector();
+        plainChecker.addListener(collector);
+        try {
+            plainChecker.process(Collections.singletonList(file));
+        } finally {
+            plainChecker.removeListener(collector);
+        }
+        return collector.getResults();
+    }
+
+    @Benchmark
+    public List<CheckstyleViolation> processText () throws CheckstyleException {
+        CheckstyleViolation.Collector collector = new CheckstyleViolation.Collector();
+        checker.addListener(collector);
+        try {
+            FileText text = SourceText.create(file, source).getFileText();
+            checker.process(file, text);
+        } finally {
+            checker.removeListener(collector);
+        }
+        return collector.getResults();
+    }
+}
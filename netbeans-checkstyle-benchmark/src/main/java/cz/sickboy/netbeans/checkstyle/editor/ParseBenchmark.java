@@ -0,0 +1,157 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle.editor;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.util.JavacTask;
+import cz.sickboy.netbeans.checkstyle.SourceText;
+import cz.sickboy.netbeans.checkstyle.benchmark.Corpus;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.StyledDocument;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures what the editor task saves by using the parse result it gets.
+ * The javac parse alone is what the task waits for in the
+ * <code>PARSED</code> phase, the parse followed by the attribution is what
+ * it waited for in the <code>UP_TO_DATE</code> phase. The source snapshot
+ * the infrastructure parsed is compared with copying the document and with
+ * reading the file.
+ *
+ * @author Petr Hejl
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParseBenchmark {
+
+    private static final DiagnosticListener<JavaFileObject> IGNORE = new DiagnosticListener<JavaFileObject>() {
+
+        @Override
+        public void report (Diagnostic<? extends JavaFileObject> diagnostic) {
+            // not interesting
+        }
+    };
+
+    @Param({"100", "1000", "10000"})
+    public int lines;
+
+    private JavaCompiler compiler;
+
+    private StandardJavaFileManager fileManager;
+
+    private JavaFileObject source;
+
+    private String text;
+
+    private StyledDocument document;
+
+    private File file;
+
+    @Setup
+    public void setUp () throws BadLocationException, IOException {
+        compiler = ToolProvider.getSystemJavaCompiler();
+        fileManager = compiler.getStandardFileManager(IGNORE, null, StandardCharsets.UTF_8);
+        text = Corpus.createSource(lines);
+        source = new SimpleJavaFileObject(URI.create("string:///test/Test.java"), JavaFileObject.Kind.SOURCE) { // NOI18N
+
+            @Override
+            public CharSequence getCharContent (boolean ignoreEncodingErrors) {
+                return text;
+            }
+        };
+
+        document = new DefaultStyledDocument();
+        document.insertString(0, text, null);
+
+        file = File.createTempFile("Test", ".java"); // NOI18N
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TearDown
+    public void tearDown () throws IOException {
+        fileManager.close();
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    @Benchmark
+    public Iterable<? extends CompilationUnitTree> parsed () throws IOException {
+        return createTask().parse();
+    }
+
+    @Benchmark
+    public Iterable<? extends CompilationUnitTree> upToDate () throws IOException {
+        JavacTask task = createTask();
+        Iterable<? extends CompilationUnitTree> units = task.parse();
+        task.analyze();
+        return units;
+    }
+
+    @Benchmark
+    public SourceText snapshotText () {
+        return SourceText.create(file, text);
+    }
+
+    @Benchmark
+    public SourceText documentText () throws BadLocationException {
+        return SourceText.create(file, document.getText(0, document.getLength()));
+    }
+
+    @Benchmark
+    public SourceText fileText () throws IOException {
+        return SourceText.create(file, new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+
+    private JavacTask createTask () {
+        return (JavacTask) compiler.getTask(null, fileManager, IGNORE, Arrays.asList("-proc:none"), // NOI18N
+            null, Collections.singletonList(source));
+    }
+}
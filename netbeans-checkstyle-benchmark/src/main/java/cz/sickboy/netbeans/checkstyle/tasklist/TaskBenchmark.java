@@ -0,0 +1,78 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle.tasklist;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import cz.sickboy.netbeans.checkstyle.CheckstyleViolation;
+import cz.sickboy.netbeans.checkstyle.Severity;
+import cz.sickboy.netbeans.checkstyle.benchmark.Corpus;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.netbeans.spi.tasklist.Task;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures turning the collected problems into the task list tasks.
+ *
+ * @author Petr Hejl
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TaskBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int violations;
+
+    private FileObject fileObject;
+
+    private List<CheckstyleViolation> results;
+
+    @Setup
+    public void setUp () throws IOException {
+        fileObject = FileUtil.createMemoryFileSystem().getRoot().createData("Test", "java"); // NOI18N
+
+        results = new ArrayList<CheckstyleViolation>(violations);
+        for (AuditEvent event : Corpus.createEvents(violations, 10000, "Test.java")) { // NOI18N
+            results.add(CheckstyleViolation.create(event));
+        }
+    }
+
+    @Benchmark
+    public List<Task> createTasks () {
+        return CheckstyleTaskScanner.createTasks(fileObject, results, Severity.INFO);
+    }
+}
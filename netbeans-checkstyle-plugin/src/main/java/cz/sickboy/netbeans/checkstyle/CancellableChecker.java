@@ -19,29 +19,54 @@
 package cz.sickboy.netbeans.checkstyle;
 
 import com.puppycrawl.tools.checkstyle.Checker;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+import com.puppycrawl.tools.checkstyle.api.AbstractCheck;
+import com.puppycrawl.tools.checkstyle.api.BeforeExecutionFileFilter;
+import com.puppycrawl.tools.checkstyle.api.BeforeExecutionFileFilterSet;
 import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
 import com.puppycrawl.tools.checkstyle.api.Configuration;
 import com.puppycrawl.tools.checkstyle.api.Context;
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
 import com.puppycrawl.tools.checkstyle.api.FileSetCheck;
 import com.puppycrawl.tools.checkstyle.api.FileText;
 import com.puppycrawl.tools.checkstyle.api.MessageDispatcher;
+import com.puppycrawl.tools.checkstyle.api.TokenTypes;
 import com.puppycrawl.tools.checkstyle.api.Violation;
-import cz.sickboy.netbeans.checkstyle.editor.CheckstyleTask;
+import com.puppycrawl.tools.checkstyle.checks.NewlineAtEndOfFileCheck;
+import cz.sickboy.netbeans.checkstyle.editor.CheckScheduler;
 import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
- * The checkstyle checker that calls for the cancel status of the {@link CheckstyleTask} and cancel itself if the task
- * is cancelled.
+ * The checkstyle checker that calls for the cancel status of the scheduled editor check and cancel itself if the check
+ * is cancelled. The status is consulted before each file set check and within the tree walker on every type, method
+ * and block, so a long walk stops soon after the cancellation.
  *
  * @author Petr Hejl
- * @see CheckstyleTask
+ * @see CheckScheduler
  */
 public class CancellableChecker extends Checker {
 
+    private static final Logger LOGGER = Logger.getLogger(CancellableChecker.class.getName());
+
+    /**
+     * The checks reading the checked file from the disk on their own.
+     */
+    private static final Set<String> DISK_CHECKS = Collections.singleton(NewlineAtEndOfFileCheck.class.getName());
+
     private static final SortedSet<Violation> EMPTY_SET = new TreeSet<Violation>() {
         private static final long serialVersionUID = 1L;
 
@@ -56,7 +81,13 @@ public class CancellableChecker extends Checker {
         }
     };
 
-    private final CancellationHook hook;
+    private final List<FileSetCheck> fileSetChecks = new ArrayList<FileSetCheck>();
+
+    private final BeforeExecutionFileFilterSet beforeExecutionFileFilters = new BeforeExecutionFileFilterSet();
+
+    private String charset = System.getProperty("file.encoding", StandardCharsets.UTF_8.name()); // NOI18N
+
+    private volatile CancellationHook hook;
 
     /**
      * Contructs the checker that won't do any checks whenewer the task has cancelled status set to <code>true</code>.
@@ -68,12 +99,62 @@ public class CancellableChecker extends Checker {
         this.hook = hook;
     }
 
+    /**
+     * Sets the hook consulted for the cancellation. Used when the configured checker is reused for another task.
+     *
+     * @param hook the hook to consult, may be <code>null</code> for a checker that is never cancelled
+     */
+    public void setCancellationHook (CancellationHook hook) {
+        this.hook = hook;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void addFileSetCheck (FileSetCheck fileSetCheck) {
-        super.addFileSetCheck(new CancellableFileSetCheck(fileSetCheck, hook));
+        if (fileSetCheck instanceof TreeWalker) {
+            addCancellationCheck((TreeWalker) fileSetCheck);
+        }
+        FileSetCheck check = new CancellableFileSetCheck(fileSetCheck, this);
+        fileSetChecks.add(check);
+        super.addFileSetCheck(check);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addBeforeExecutionFileFilter (BeforeExecutionFileFilter filter) {
+        beforeExecutionFileFilters.addBeforeExecutionFileFilter(filter);
+        super.addBeforeExecutionFileFilter(filter);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeBeforeExecutionFileFilter (BeforeExecutionFileFilter filter) {
+        beforeExecutionFileFilters.removeBeforeExecutionFileFilter(filter);
+        super.removeBeforeExecutionFileFilter(filter);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setCharset (String charset) throws UnsupportedEncodingException {
+        super.setCharset(charset);
+        this.charset = charset;
+    }
+
+    /**
+     * Returns the name of the charset the checked files are read with.
+     *
+     * @return the name of the charset of the checked files
+     */
+    public String getCharset () {
+        return charset;
     }
 
     /**
@@ -87,6 +168,89 @@ public class CancellableChecker extends Checker {
         process(Collections.singletonList(file));
     }
 
+    /**
+     * Checks the given text of the file. Unlike {@link #process(File)} the
+     * file is not read from the disk so the text may differ from the saved
+     * content. Only the file events are fired to the listeners, the audit
+     * events are not. The problems are fired once each file set check is
+     * done, so they are ordered per check, not per file.
+     * <p>
+     * Some checks read the saved file from the disk regardless of the given
+     * text, their problems are recognized by {@link #isReadFromDisk(CheckstyleViolation)}.
+     *
+     * @param file file to check
+     * @param text the text of the file to check
+     * @throws CheckstyleException if the file has errors
+     */
+    public void process (File file, FileText text) throws CheckstyleException {
+        String fileName = file.getAbsolutePath();
+        if (!beforeExecutionFileFilters.accept(fileName)) {
+            return;
+        }
+
+        for (FileSetCheck check : fileSetChecks) {
+            check.beginProcessing(charset);
+        }
+        try {
+            fireFileStarted(fileName);
+            for (FileSetCheck check : fileSetChecks) {
+                SortedSet<Violation> violations;
+                try {
+                    violations = check.process(file, text);
+                } catch (CheckstyleException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    throw new CheckstyleException("Exception was thrown while processing " // NOI18N
+                        + file.getPath(), ex);
+                }
+                // delivered as soon as available, not after all the checks
+                fireErrors(fileName, violations);
+            }
+            fireFileFinished(fileName);
+        } finally {
+            for (FileSetCheck check : fileSetChecks) {
+                check.finishProcessing();
+            }
+        }
+    }
+
+    /**
+     * Returns whether the problem was reported by a check reading the saved
+     * file from the disk instead of the given text.
+     *
+     * @param violation the reported problem
+     * @return <code>true</code> if the problem is not related to the checked text
+     * @see #process(File, FileText)
+     */
+    public static boolean isReadFromDisk (CheckstyleViolation violation) {
+        return DISK_CHECKS.contains(violation.getSource());
+    }
+
+    private void addCancellationCheck (TreeWalker walker) {
+        // the walker is already configured, the factory is used just for the added check
+        walker.setModuleFactory(new ModuleFactory() {
+
+            @Override
+            public Object createModule (String name) throws CheckstyleException {
+                if (!CancellationCheck.class.getName().equals(name)) {
+                    throw new CheckstyleException("Unexpected module " + name); // NOI18N
+                }
+                return new CancellationCheck(CancellableChecker.this);
+            }
+        });
+        try {
+            walker.setupChild(new DefaultConfiguration(CancellationCheck.class.getName()));
+        } catch (CheckstyleException ex) {
+            // the walk just won't be interrupted
+            LOGGER.log(Level.INFO, null, ex);
+        }
+    }
+
+    boolean isCanceled () {
+        CancellationHook current = hook;
+        return current != null && current.isCanceled();
+    }
+
     /**
      * Interface that defines a way to check if the checker has been canceled.
      */
@@ -108,11 +272,11 @@ public class CancellableChecker extends Checker {
 
         private final FileSetCheck check;
 
-        private final CancellationHook hook;
+        private final CancellableChecker checker;
 
-        public CancellableFileSetCheck (FileSetCheck check, CancellationHook hook) {
+        public CancellableFileSetCheck (FileSetCheck check, CancellableChecker checker) {
             this.check = check;
-            this.hook = hook;
+            this.checker = checker;
         }
 
         @Override
@@ -132,10 +296,14 @@ public class CancellableChecker extends Checker {
 
         @Override
         public SortedSet<Violation> process (File file, FileText lines) throws CheckstyleException {
-            if (hook.isCanceled()) {
+            if (checker.isCanceled()) {
+                return EMPTY_SET;
+            }
+            try {
+                return check.process(file, lines);
+            } catch (CancellationException ex) {
                 return EMPTY_SET;
             }
-            return check.process(file, lines);
         }
 
         @Override
@@ -158,4 +326,59 @@ public class CancellableChecker extends Checker {
             check.beginProcessing(charset);
         }
     }
+
+    /**
+     * The tree walker check interrupting the walk once the checker is cancelled. Just the structural tokens are
+     * visited, so the checks that are never cancelled don't pay for a call on every node.
+     */
+    static final class CancellationCheck extends AbstractCheck {
+
+        private static final int[] TOKENS = {
+            TokenTypes.CLASS_DEF,
+            TokenTypes.INTERFACE_DEF,
+            TokenTypes.ENUM_DEF,
+            TokenTypes.RECORD_DEF,
+            TokenTypes.ANNOTATION_DEF,
+            TokenTypes.METHOD_DEF,
+            TokenTypes.CTOR_DEF,
+            TokenTypes.SLIST,
+        };
+
+        private final CancellableChecker checker;
+
+        public CancellationCheck (CancellableChecker checker) {
+            this.checker = checker;
+        }
+
+        @Override
+        public int[] getDefaultTokens () {
+            return getAcceptableTokens();
+        }
+
+        @Override
+        public int[] getAcceptableTokens () {
+            return TOKENS.clone();
+        }
+
+        @Override
+        public int[] getRequiredTokens () {
+            return new int[0];
+        }
+
+        @Override
+        public void beginTree (DetailAST rootAST) {
+            checkCanceled();
+        }
+
+        @Override
+        public void visitToken (DetailAST ast) {
+            checkCanceled();
+        }
+
+        private void checkCanceled () {
+            if (checker.isCanceled()) {
+                throw new CancellationException();
+            }
+        }
+    }
 }
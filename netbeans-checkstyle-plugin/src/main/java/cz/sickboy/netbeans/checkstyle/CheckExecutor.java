@@ -0,0 +1,248 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Runs the checks of the editor and the task list. By default the checks run
+ * in a request processor with a fixed number of threads. When enabled and the
+ * platform supports it each check gets its own virtual thread instead. The
+ * number of the checks running in virtual threads at once is limited, by
+ * default to the number of processors, so the number of the checkers in use
+ * and the memory they hold stays bounded.
+ *
+ * @author Petr Hejl
+ */
+public abstract class CheckExecutor {
+
+    private static final Logger LOGGER = Logger.getLogger(CheckExecutor.class.getName());
+
+    private static final boolean VIRTUAL_THREADS = Boolean.getBoolean(
+        "cz.sickboy.netbeans.checkstyle.virtualThreads"); // NOI18N
+
+    /**
+     * The maximal number of the checks running in virtual threads at once.
+     */
+    private static final int MAX_VIRTUAL_CHECKS = Integer.getInteger(
+        "cz.sickboy.netbeans.checkstyle.virtualThreadChecks", // NOI18N
+        Runtime.getRuntime().availableProcessors());
+
+    private static ExecutorService virtualExecutor;
+
+    private static Semaphore permits;
+
+    CheckExecutor () {
+        super();
+    }
+
+    /**
+     * Creates the executor for the checks.
+     *
+     * @param name the name of the executor
+     * @param threads the number of threads used unless the checks run in
+     *             virtual threads
+     * @return the executor for the checks
+     */
+    public static CheckExecutor create (String name, int threads) {
+        if (VIRTUAL_THREADS) {
+            synchronized (CheckExecutor.class) {
+                if (virtualExecutor == null) {
+                    virtualExecutor = createVirtualExecutor();
+                    permits = new Semaphore(Math.max(1, MAX_VIRTUAL_CHECKS));
+                }
+                if (virtualExecutor != null) {
+                    return new VirtualThreadExecutor(virtualExecutor, permits);
+                }
+            }
+        }
+        return new RequestProcessorExecutor(new RequestProcessor(name, Math.max(1, threads), true));
+    }
+
+    /**
+     * Runs the task after the delay.
+     *
+     * @param task the task to run
+     * @param delay the delay in milliseconds
+     * @return the handle of the posted task
+     */
+    public abstract Handle post (Runnable task, int delay);
+
+    private static ExecutorService createVirtualExecutor () {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor"); // NOI18N
+            return (ExecutorService) method.invoke(null);
+        } catch (NoSuchMethodException ex) {
+            LOGGER.log(Level.INFO, "Virtual threads are not supported by {0}", // NOI18N
+                System.getProperty("java.version")); // NOI18N
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            LOGGER.log(Level.INFO, null, ex);
+        }
+        return null;
+    }
+
+    /**
+     * The handle of the posted task.
+     */
+    public static interface Handle {
+
+        /**
+         * Cancels the task. The task that has already started is interrupted.
+         *
+         * @return <code>true</code> if the task has not started and won't start
+         */
+        boolean cancel ();
+
+    }
+
+    private static final class RequestProcessorExecutor extends CheckExecutor {
+
+        private final RequestProcessor processor;
+
+        public RequestProcessorExecutor (RequestProcessor processor) {
+            this.processor = processor;
+        }
+
+        @Override
+        public Handle post (Runnable task, int delay) {
+            final RequestProcessor.Task posted = processor.post(task, delay);
+            return new Handle() {
+
+                @Override
+                public boolean cancel () {
+                    return posted.cancel();
+                }
+            };
+        }
+    }
+
+    /**
+     * Starts a thread for every task, the number of the tasks running at once
+     * is limited by the permits.
+     */
+    static final class VirtualThreadExecutor extends CheckExecutor {
+
+        private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+
+                @Override
+                public Thread newThread (Runnable r) {
+                    Thread thread = new Thread(r, CheckExecutor.class.getName());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+        private final ExecutorService executor;
+
+        private final Semaphore permits;
+
+        VirtualThreadExecutor (ExecutorService executor, Semaphore permits) {
+            this.executor = executor;
+            this.permits = permits;
+        }
+
+        @Override
+        public Handle post (Runnable task, int delay) {
+            final PostedTask posted = new PostedTask(task);
+            if (delay <= 0) {
+                executor.execute(posted);
+            } else {
+                TIMER.schedule(new Runnable() {
+
+                    @Override
+                    public void run () {
+                        if (!posted.isCancelled()) {
+                            executor.execute(posted);
+                        }
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+            return posted;
+        }
+
+        private final class PostedTask implements Runnable, Handle {
+
+            private static final int NEW = 0;
+
+            private static final int RUNNING = 1;
+
+            private static final int CANCELLED = 2;
+
+            private final AtomicInteger state = new AtomicInteger(NEW);
+
+            private final Runnable task;
+
+            private volatile Thread thread;
+
+            public PostedTask (Runnable task) {
+                this.task = task;
+            }
+
+            @Override
+            public void run () {
+                if (!state.compareAndSet(NEW, RUNNING)) {
+                    return;
+                }
+                thread = Thread.currentThread();
+                try {
+                    permits.acquire();
+                } catch (InterruptedException ex) {
+                    // cancelled while waiting
+                    thread = null;
+                    return;
+                }
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                    thread = null;
+                    // the thread may be pooled, don't leak the interrupt
+                    Thread.interrupted();
+                }
+            }
+
+            @Override
+            public boolean cancel () {
+                if (state.compareAndSet(NEW, CANCELLED)) {
+                    return true;
+                }
+                Thread current = thread;
+                if (current != null) {
+                    current.interrupt();
+                }
+                return false;
+            }
+
+            boolean isCancelled () {
+                return state.get() == CANCELLED;
+            }
+        }
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle;
+
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.netbeans.api.java.classpath.ClassPath;
+import org.openide.filesystems.FileObject;
+
+/**
+ * Pool of already configured checkers. Configuring the checker is expensive
+ * so the checkers are reused as long as the configuration they were created
+ * for is the current one.
+ * <p>
+ * Checkers are pooled per configuration and project class loader. Each entry
+ * keeps a bounded number of idle checkers and the least recently used entries
+ * are evicted once there are too many of them. Any number of checkers may be
+ * checked out concurrently.
+ *
+ * @author Petr Hejl
+ */
+public final class CheckerPool {
+
+    private static final Logger LOGGER = Logger.getLogger(CheckerPool.class.getName());
+
+    private static final int MAX_IDLE_CHECKERS = Integer.getInteger(
+        "cz.sickboy.netbeans.checkstyle.checkerPoolSize", // NOI18N
+        Math.max(4, Runtime.getRuntime().availableProcessors()));
+
+    private static final int MAX_ENTRIES = Integer.getInteger(
+        "cz.sickboy.netbeans.checkstyle.checkerPoolEntries", 8); // NOI18N
+
+    private static CheckerPool instance;
+
+    private final int maxIdleCheckers;
+
+    private final int maxEntries;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /* GuardedBy("this") */
+    private final LinkedHashMap<Key, Deque<CancellableChecker>> idleCheckers =
+        new LinkedHashMap<Key, Deque<CancellableChecker>>(16, 0.75f, true);
+
+    /* GuardedBy("this") */
+    private final Map<CancellableChecker, Lease> leases = new IdentityHashMap<CancellableChecker, Lease>();
+
+    /* GuardedBy("this") */
+    private int generation;
+
+    CheckerPool (int maxIdleCheckers, int maxEntries) {
+        this.maxIdleCheckers = maxIdleCheckers;
+        this.maxEntries = maxEntries;
+    }
+
+    public static synchronized CheckerPool getDefault () {
+        if (instance == null) {
+            instance = new CheckerPool(MAX_IDLE_CHECKERS, MAX_ENTRIES);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the configured checker for the given file and configuration.
+     * The checkers are pooled per execution class loader of the file.
+     *
+     * @param fileObject the file to check
+     * @param configuration the configuration the checker has to use
+     * @param hook the hook consulted for cancellation while the checker is in use
+     * @return the configured checker
+     * @throws CheckstyleException if checkstyle configuration fails
+     * @see #acquireChecker(Configuration, ClassLoader, CancellableChecker.CancellationHook)
+     */
+    public CancellableChecker acquireChecker (FileObject fileObject, Configuration configuration,
+        CancellableChecker.CancellationHook hook) throws CheckstyleException
+    {
+        ClassLoader classLoader = null;
+        ClassPath path = ClassPath.getClassPath(fileObject, ClassPath.EXECUTE);
+        if (path != null) {
+            classLoader = path.getClassLoader(true);
+        }
+        return acquireChecker(configuration, classLoader, hook);
+    }
+
+    /**
+     * Returns the configured checker for the given configuration and class
+     * loader. The checker has to be returned via {@link #releaseChecker(CancellableChecker)}
+     * once the caller is done with it.
+     *
+     * @param configuration the configuration the checker has to use
+     * @param classLoader the project class loader the checker is used for, may be <code>null</code>
+     * @param hook the hook consulted for cancellation while the checker is in use
+     * @return the configured checker
+     * @throws CheckstyleException if checkstyle configuration fails
+     */
+    public CancellableChecker acquireChecker (Configuration configuration, ClassLoader classLoader,
+        CancellableChecker.CancellationHook hook) throws CheckstyleException
+    {
+        Key key = new Key(configuration, classLoader);
+
+        CancellableChecker checker = null;
+        int currentGeneration;
+        synchronized (this) {
+            currentGeneration = generation;
+            Deque<CancellableChecker> idle = idleCheckers.get(key);
+            if (idle != null) {
+                checker = idle.pollFirst();
+                if (idle.isEmpty()) {
+                    idleCheckers.remove(key);
+                }
+            }
+            if (checker != null) {
+                leases.put(checker, new Lease(key, currentGeneration));
+            }
+        }
+
+        if (checker != null) {
+            hits.incrementAndGet();
+            LOGGER.log(Level.FINE, "Checker pool hit");
+            checker.setCancellationHook(hook);
+            return checker;
+        }
+
+        misses.incrementAndGet();
+        LOGGER.log(Level.FINE, "Checker pool miss");
+        checker = new CancellableChecker(hook);
+        // classloader to load checks
+        checker.setModuleClassLoader(configuration.getCheckstyleClassLoader());
+        checker.configure(configuration.getCheckstyleConfiguration());
+
+        synchronized (this) {
+            leases.put(checker, new Lease(key, currentGeneration));
+        }
+        return checker;
+    }
+
+    /**
+     * Returns the checker to the pool. The checker is destroyed if its entry
+     * is full or the pool has been cleared since the checker was acquired.
+     *
+     * @param checker the checker to return
+     */
+    public void releaseChecker (CancellableChecker checker) {
+        checker.setCancellationHook(null);
+
+        List<CancellableChecker> evicted = new ArrayList<CancellableChecker>();
+        boolean pooled = false;
+        synchronized (this) {
+            Lease lease = leases.remove(checker);
+            if (lease != null && lease.generation == generation) {
+                Deque<CancellableChecker> idle = idleCheckers.get(lease.key);
+                if (idle == null) {
+                    idle = new ArrayDeque<CancellableChecker>();
+                    idleCheckers.put(lease.key, idle);
+                }
+                if (idle.size() < maxIdleCheckers) {
+                    idle.addFirst(checker);
+                    pooled = true;
+                }
+                evictEntries(evicted);
+            }
+        }
+        if (!pooled) {
+            evicted.add(checker);
+        }
+        destroy(evicted);
+    }
+
+    /**
+     * Destroys all the idle checkers. Checkers currently in use are destroyed
+     * once released.
+     */
+    public void clear () {
+        List<CancellableChecker> stale = new ArrayList<CancellableChecker>();
+        synchronized (this) {
+            for (Deque<CancellableChecker> idle : idleCheckers.values()) {
+                stale.addAll(idle);
+            }
+            idleCheckers.clear();
+            generation++;
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Checker pool cleared: {0}", this);
+        }
+        destroy(stale);
+    }
+
+    /**
+     * Destroys the idle checkers exceeding a single one per entry. Useful
+     * when a burst of concurrent checks is over.
+     */
+    public void trim () {
+        List<CancellableChecker> stale = new ArrayList<CancellableChecker>();
+        synchronized (this) {
+            for (Deque<CancellableChecker> idle : idleCheckers.values()) {
+                while (idle.size() > 1) {
+                    stale.add(idle.pollLast());
+                }
+            }
+        }
+        destroy(stale);
+    }
+
+    public long getHitCount () {
+        return hits.get();
+    }
+
+    public long getMissCount () {
+        return misses.get();
+    }
+
+    public long getEvictionCount () {
+        return evictions.get();
+    }
+
+    synchronized int getIdleCount () {
+        int count = 0;
+        for (Deque<CancellableChecker> idle : idleCheckers.values()) {
+            count += idle.size();
+        }
+        return count;
+    }
+
+    synchronized int getEntryCount () {
+        return idleCheckers.size();
+    }
+
+    @Override
+    public String toString () {
+        return "CheckerPool[hits=" + hits.get() + ", misses=" + misses.get() // NOI18N
+            + ", evictions=" + evictions.get() + "]"; // NOI18N
+    }
+
+    /* GuardedBy("this") */
+    private void evictEntries (List<CancellableChecker> evicted) {
+        Iterator<Deque<CancellableChecker>> it = idleCheckers.values().iterator();
+        while (idleCheckers.size() > maxEntries && it.hasNext()) {
+            evicted.addAll(it.next());
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static void destroy (List<CancellableChecker> checkers) {
+        for (CancellableChecker checker : checkers) {
+            checker.destroy();
+        }
+    }
+
+    /**
+     * Identifies the checkers that are configured the same way. Only the
+     * checkstyle configuration and the class loader of the checks affect the
+     * checker, so the configurations differing in the severity or the path
+     * patterns share the pooled checkers.
+     */
+    private static final class Key {
+
+        private final com.puppycrawl.tools.checkstyle.api.Configuration configuration;
+
+        private final ClassLoader checkstyleClassLoader;
+
+        private final ClassLoader classLoader;
+
+        public Key (Configuration configuration, ClassLoader classLoader) {
+            this.configuration = configuration.getCheckstyleConfiguration();
+            this.checkstyleClassLoader = configuration.getCheckstyleClassLoader();
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        public boolean equals (Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return configuration == other.configuration
+                && checkstyleClassLoader == other.checkstyleClassLoader
+                && (classLoader == other.classLoader
+                    || (classLoader != null && classLoader.equals(other.classLoader)));
+        }
+
+        @Override
+        public int hashCode () {
+            int hash = 7;
+            hash = 41 * hash + System.identityHashCode(configuration);
+            hash = 41 * hash + System.identityHashCode(checkstyleClassLoader);
+            hash = 41 * hash + (classLoader != null ? classLoader.hashCode() : 0);
+            return hash;
+        }
+    }
+
+    private static final class Lease {
+
+        private final Key key;
+
+        private final int generation;
+
+        public Lease (Key key, int generation) {
+            this.key = key;
+            this.generation = generation;
+        }
+    }
+}
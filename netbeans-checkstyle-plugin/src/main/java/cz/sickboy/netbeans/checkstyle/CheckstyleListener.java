@@ -26,6 +26,9 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * Collects the results created from the audit events. The number of the kept
+ * results of a given severity may be limited, the results over the limit are
+ * just counted.
  *
  * @author Petr Hejl
  */
@@ -35,17 +38,54 @@ public abstract class CheckstyleListener<T> implements AuditListener {
 
     private final Severity minimalSeverity;
 
+    private final Severity limitedSeverity;
+
+    private final int maxResults;
+
     /* GuardedBy("this") */
     private final List<T> results = new ArrayList<T>();
 
+    /* GuardedBy("this") */
+    private int limitedCount;
+
+    /* GuardedBy("this") */
+    private int overflowCount;
+
     public CheckstyleListener (Severity minimalSeverity) {
+        this(minimalSeverity, minimalSeverity, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates the listener keeping at most the given number of results of
+     * the limited severity. The results below the limited severity don't
+     * count and are always kept.
+     *
+     * @param minimalSeverity the minimal severity of the kept results
+     * @param limitedSeverity the minimal severity of the results counted
+     *             by the limit
+     * @param maxResults the maximal number of the kept results of the
+     *             limited severity
+     */
+    public CheckstyleListener (Severity minimalSeverity, Severity limitedSeverity, int maxResults) {
         this.minimalSeverity = minimalSeverity;
+        this.limitedSeverity = limitedSeverity;
+        this.maxResults = maxResults;
     }
 
     public synchronized final List<T> getResults () {
         return results;
     }
 
+    /**
+     * Returns the number of the results of the limited severity dropped
+     * because of the limit.
+     *
+     * @return the number of the dropped results
+     */
+    public synchronized final int getOverflowCount () {
+        return overflowCount;
+    }
+
     public abstract T createResult (AuditEvent evt);
 
     @Override
@@ -59,15 +99,40 @@ public abstract class CheckstyleListener<T> implements AuditListener {
         }
 
         if (minimalSeverity.include(evt.getSeverityLevel())) {
+            boolean limited = limitedSeverity.include(evt.getSeverityLevel());
+            if (limited) {
+                synchronized (this) {
+                    if (limitedCount >= maxResults) {
+                        overflowCount++;
+                        return;
+                    }
+                }
+            }
             T result = createResult(evt);
             if (result != null) {
+                int count;
                 synchronized (this) {
                     results.add(result);
+                    if (limited) {
+                        limitedCount++;
+                    }
+                    count = results.size();
                 }
+                resultAdded(result, count);
             }
         }
     }
 
+    /**
+     * Called once the result has been added. The default implementation
+     * does nothing.
+     *
+     * @param result the added result
+     * @param count the number of the results kept so far
+     */
+    protected void resultAdded (T result, int count) {
+    }
+
     @Override
     public final void addException (AuditEvent evt, Throwable throwable) {
         LOGGER.log(Level.SEVERE, null, throwable);
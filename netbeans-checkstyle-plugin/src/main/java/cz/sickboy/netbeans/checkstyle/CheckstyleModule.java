@@ -63,6 +63,7 @@ public class CheckstyleModule extends ModuleInstall {
     @Override
     public void uninstalled () {
         CheckstyleAnnotationContainer.reset();
+        ConfigurationLoader.reset();
     }
 
     private static Dimension getPreferredSize (String html, int width) {
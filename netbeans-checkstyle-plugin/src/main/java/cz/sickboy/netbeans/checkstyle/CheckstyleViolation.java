@@ -0,0 +1,123 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+
+/**
+ * The single checkstyle problem detached from the audit that reported it,
+ * so it can be cached and turned into annotations or tasks later.
+ *
+ * @author Petr Hejl
+ */
+public final class CheckstyleViolation {
+
+    private final int line;
+
+    private final int column;
+
+    private final SeverityLevel severity;
+
+    private final String message;
+
+    private final String source;
+
+    public CheckstyleViolation (int line, int column, SeverityLevel severity, String message, String source) {
+        this.line = line;
+        this.column = column;
+        this.severity = severity;
+        this.message = message;
+        this.source = source;
+    }
+
+    public static CheckstyleViolation create (AuditEvent evt) {
+        MessageTable table = MessageTable.getDefault();
+        return new CheckstyleViolation(evt.getLine(), evt.getColumn(), evt.getSeverityLevel(),
+            table.intern(evt.getMessage()), table.intern(evt.getSourceName()));
+    }
+
+    /**
+     * Returns the line of the problem, the first line is <code>1</code>.
+     *
+     * @return the line of the problem
+     */
+    public int getLine () {
+        return line;
+    }
+
+    /**
+     * Returns the column of the problem, <code>0</code> if not known.
+     *
+     * @return the column of the problem
+     */
+    public int getColumn () {
+        return column;
+    }
+
+    public SeverityLevel getSeverity () {
+        return severity;
+    }
+
+    public String getMessage () {
+        return message;
+    }
+
+    /**
+     * Returns the name of the check that reported the problem.
+     *
+     * @return the name of the check that reported the problem
+     */
+    public String getSource () {
+        return source;
+    }
+
+    @Override
+    public String toString () {
+        return line + ":" + column + ": " + severity + ": " + message; // NOI18N
+    }
+
+    /**
+     * Listener collecting all the problems regardless of the severity.
+     */
+    public static class Collector extends CheckstyleListener<CheckstyleViolation> {
+
+        public Collector () {
+            super(Severity.IGNORE);
+        }
+
+        /**
+         * Creates the collector keeping at most the given number of the
+         * problems of the limited severity.
+         *
+         * @param limitedSeverity the minimal severity of the problems
+         *             counted by the limit
+         * @param maxResults the maximal number of the kept problems of the
+         *             limited severity
+         */
+        public Collector (Severity limitedSeverity, int maxResults) {
+            super(Severity.IGNORE, limitedSeverity, maxResults);
+        }
+
+        @Override
+        public CheckstyleViolation createResult (AuditEvent evt) {
+            return create(evt);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle;
+
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Unmodifiable list of the problems of a single file stored in columns of
+ * primitive arrays. The messages and the check names are stored once per
+ * file and referenced by their index. The {@link CheckstyleViolation}
+ * instances are created only when the list is accessed, the column
+ * accessors avoid that completely.
+ *
+ * @author Petr Hejl
+ */
+public final class CompactViolationList extends AbstractList<CheckstyleViolation> implements RandomAccess {
+
+    private static final SeverityLevel[] SEVERITIES = SeverityLevel.values();
+
+    private final int[] lines;
+
+    private final int[] columns;
+
+    private final byte[] severities;
+
+    private final int[] messages;
+
+    private final int[] sources;
+
+    private final String[] strings;
+
+    private CompactViolationList (int[] lines, int[] columns, byte[] severities,
+        int[] messages, int[] sources, String[] strings)
+    {
+        this.lines = lines;
+        this.columns = columns;
+        this.severities = severities;
+        this.messages = messages;
+        this.sources = sources;
+        this.strings = strings;
+    }
+
+    /**
+     * Returns the compact copy of the problems.
+     *
+     * @param violations the problems of the file
+     * @return the compact list of the problems, the same list if it is
+     *             compact already
+     */
+    public static CompactViolationList create (List<CheckstyleViolation> violations) {
+        if (violations instanceof CompactViolationList) {
+            return (CompactViolationList) violations;
+        }
+
+        int size = violations.size();
+        int[] lines = new int[size];
+        int[] columns = new int[size];
+        byte[] severities = new byte[size];
+        int[] messages = new int[size];
+        int[] sources = new int[size];
+
+        MessageTable table = MessageTable.getDefault();
+        Map<String, Integer> indices = new HashMap<String, Integer>();
+        List<String> strings = new ArrayList<String>();
+
+        int i = 0;
+        for (CheckstyleViolation violation : violations) {
+            lines[i] = violation.getLine();
+            columns[i] = violation.getColumn();
+            severities[i] = (byte) violation.getSeverity().ordinal();
+            messages[i] = getIndex(violation.getMessage(), indices, strings, table);
+            sources[i] = getIndex(violation.getSource(), indices, strings, table);
+            i++;
+        }
+        return new CompactViolationList(lines, columns, severities, messages, sources,
+            strings.toArray(new String[strings.size()]));
+    }
+
+    @Override
+    public CheckstyleViolation get (int index) {
+        return new CheckstyleViolation(getLine(index), getColumn(index), getSeverity(index),
+            getMessage(index), getSource(index));
+    }
+
+    @Override
+    public int size () {
+        return lines.length;
+    }
+
+    public int getLine (int index) {
+        return lines[index];
+    }
+
+    public int getColumn (int index) {
+        return columns[index];
+    }
+
+    public SeverityLevel getSeverity (int index) {
+        return SEVERITIES[severities[index]];
+    }
+
+    public String getMessage (int index) {
+        int message = messages[index];
+        return message >= 0 ? strings[message] : null;
+    }
+
+    public String getSource (int index) {
+        int source = sources[index];
+        return source >= 0 ? strings[source] : null;
+    }
+
+    private static int getIndex (String value, Map<String, Integer> indices, List<String> strings,
+        MessageTable table)
+    {
+        if (value == null) {
+            return -1;
+        }
+        Integer index = indices.get(value);
+        if (index == null) {
+            index = strings.size();
+            indices.put(value, index);
+            strings.add(table.intern(value));
+        }
+        return index;
+    }
+}
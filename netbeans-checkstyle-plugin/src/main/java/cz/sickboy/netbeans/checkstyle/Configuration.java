@@ -18,6 +18,7 @@
  */
 package cz.sickboy.netbeans.checkstyle;
 
+import java.io.File;
 import java.util.regex.Pattern;
 
 /**
@@ -36,6 +37,10 @@ public final class Configuration {
 
     private final Pattern checkedPathsPattern;
 
+    private final String fingerprint;
+
+    private final PathFilter pathFilter;
+
     public Configuration (
         Severity severity,
         com.puppycrawl.tools.checkstyle.api.Configuration configuration,
@@ -43,12 +48,26 @@ public final class Configuration {
         Pattern ignoredPathsPattern,
         Pattern checkedPathsPattern
     )
+    {
+        this(severity, configuration, classLoader, ignoredPathsPattern, checkedPathsPattern, null);
+    }
+
+    public Configuration (
+        Severity severity,
+        com.puppycrawl.tools.checkstyle.api.Configuration configuration,
+        ClassLoader classLoader,
+        Pattern ignoredPathsPattern,
+        Pattern checkedPathsPattern,
+        String fingerprint
+    )
     {
         this.severity = severity;
         this.configuration = configuration;
         this.classLoader = classLoader;
         this.ignoredPathsPattern = ignoredPathsPattern;
         this.checkedPathsPattern = checkedPathsPattern;
+        this.fingerprint = fingerprint;
+        this.pathFilter = new PathFilter(ignoredPathsPattern, checkedPathsPattern);
     }
 
     public com.puppycrawl.tools.checkstyle.api.Configuration getCheckstyleConfiguration () {
@@ -70,4 +89,28 @@ public final class Configuration {
     public Pattern getCheckedPathsPattern () {
         return checkedPathsPattern;
     }
+
+    /**
+     * Returns whether the file passes both the ignored and the checked paths
+     * patterns. The decision is cached for the lifetime of the configuration.
+     *
+     * @param file the file to check
+     * @return <code>true</code> if the file should be checked
+     */
+    public boolean isChecked (File file) {
+        return pathFilter.isChecked(file.getAbsolutePath());
+    }
+
+    /**
+     * Returns the fingerprint of everything affecting the problems reported
+     * for a file, that is the checkstyle configuration, the files it refers
+     * to and the custom classpath. The severity and path patterns are not
+     * part of the fingerprint.
+     *
+     * @return the fingerprint or <code>null</code> if the results of this
+     *             configuration must not be cached
+     */
+    public String getFingerprint () {
+        return fingerprint;
+    }
 }
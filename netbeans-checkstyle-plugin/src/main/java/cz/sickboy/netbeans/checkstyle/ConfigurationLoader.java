@@ -21,6 +21,7 @@ package cz.sickboy.netbeans.checkstyle;
 import com.puppycrawl.tools.checkstyle.Checker;
 import com.puppycrawl.tools.checkstyle.ConfigurationLoader.IgnoredModulesOptions;
 import com.puppycrawl.tools.checkstyle.PropertiesExpander;
+import com.puppycrawl.tools.checkstyle.PropertyResolver;
 import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
@@ -32,24 +33,60 @@ import java.io.InputStream;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.prefs.PreferenceChangeEvent;
+import java.util.prefs.PreferenceChangeListener;
+import java.util.prefs.Preferences;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
+import javax.swing.event.ChangeListener;
+import org.netbeans.api.project.FileOwnerQuery;
+import org.netbeans.api.project.Project;
+import org.netbeans.api.project.ProjectUtils;
+import org.openide.filesystems.FileChangeAdapter;
+import org.openide.filesystems.FileChangeListener;
+import org.openide.filesystems.FileEvent;
 import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileRenameEvent;
 import org.openide.filesystems.FileUtil;
 import org.openide.filesystems.URLMapper;
+import org.openide.util.ChangeSupport;
 import org.openide.util.WeakListeners;
 import org.xml.sax.InputSource;
 
 /**
+ * Loads the checkstyle configuration according to the settings. The custom
+ * configuration file, property file, classpath entries and the files the
+ * checks refer to such as suppressions or headers are watched and the
+ * configuration is reloaded when they change on disk. The configurations
+ * loaded from urls or resources can't be watched, they are loaded again
+ * whenever the settings change. Listeners are notified once the reloaded
+ * configuration differs from the previous one.
+ * <p>
+ * A project may use its own configuration file set in the shared project
+ * preferences, the rest of the settings is common to all projects. The
+ * listeners are notified when the preference changes. The configurations
+ * are loaded once per distinct content of the configuration file, so the
+ * projects with the same rules share the loaded configuration and the
+ * pooled checkers.
  *
  * @author Petr Hejl
  */
@@ -64,6 +101,15 @@ public final class ConfigurationLoader implements PropertyChangeListener {
 
     private static final long RELOAD_DELAY_MILLIS = 300;
 
+    /**
+     * The project preference holding the project configuration file, either
+     * an url, an absolute path or a path relative to the project directory.
+     */
+    public static final String PROP_PROJECT_CONFIG_FILE =
+        "cz.sickboy.netbeans.checkstyle.customFile"; // NOI18N
+
+    private static final Pattern URL_PATTERN = Pattern.compile("[a-zA-Z][a-zA-Z0-9+.-]+:.*"); // NOI18N
+
     private static ConfigurationLoader instance;
 
     private Configuration configuration;
@@ -72,6 +118,62 @@ public final class ConfigurationLoader implements PropertyChangeListener {
 
     private Future<?> reloadTask;
 
+    private final ChangeSupport changeSupport = new ChangeSupport(this);
+
+    private final FileChangeListener fileListener = new FileListener();
+
+    /**
+     * Serializes the registration of the file listeners. The listeners are
+     * never registered while holding the monitor of the loader as the file
+     * events take it to schedule the reload.
+     */
+    private final Object listenerLock = new Object();
+
+    private PropertyChangeListener settingsListener;
+
+    /* GuardedBy("projectConfigFiles") */
+    private final Map<Project, ProjectConfigFile> projectConfigFiles = new WeakHashMap<Project, ProjectConfigFile>();
+
+    /* GuardedBy("this") */
+    private final Map<File, Boolean> watchedFiles = new HashMap<File, Boolean>();
+
+    /* GuardedBy("this") */
+    private final List<WatchChange> watchChanges = new ArrayList<WatchChange>();
+
+    private volatile boolean watchChangesPending;
+
+    /* GuardedBy("this") */
+    private boolean closed;
+
+    /* GuardedBy("this") */
+    private Configuration publishedConfiguration;
+
+    /* GuardedBy("this") */
+    private final Map<String, Configuration> publishedProjectConfigurations = new HashMap<String, Configuration>();
+
+    /* GuardedBy("this") */
+    private final Map<String, Configuration> projectConfigurations = new HashMap<String, Configuration>();
+
+    /* GuardedBy("this") */
+    private final Map<String, CheckstyleException> projectExceptions = new HashMap<String, CheckstyleException>();
+
+    /* GuardedBy("this") */
+    private CheckstyleSettings.Values values;
+
+    /* GuardedBy("this") */
+    private Loaded<Properties> loadedProperties;
+
+    /* GuardedBy("this") */
+    private Map<String, Loaded<com.puppycrawl.tools.checkstyle.api.Configuration>> loadedConfigurations =
+        new HashMap<String, Loaded<com.puppycrawl.tools.checkstyle.api.Configuration>>();
+
+    /* GuardedBy("this") */
+    private Map<String, Loaded<com.puppycrawl.tools.checkstyle.api.Configuration>> previousConfigurations =
+        new HashMap<String, Loaded<com.puppycrawl.tools.checkstyle.api.Configuration>>();
+
+    /* GuardedBy("this") */
+    private Loaded<ClassLoader> loadedClassLoader;
+
     private ConfigurationLoader () {
         super();
     }
@@ -80,8 +182,8 @@ public final class ConfigurationLoader implements PropertyChangeListener {
         if (instance == null) {
             instance = new ConfigurationLoader();
             CheckstyleSettings settings = CheckstyleSettings.getDefault();
-            settings.addPropertyChangeListener(
-                WeakListeners.propertyChange(instance, settings));
+            instance.settingsListener = WeakListeners.propertyChange(instance, settings);
+            settings.addPropertyChangeListener(instance.settingsListener);
 
             // prepare the configuration
             instance.reloadConfiguration();
@@ -89,91 +191,576 @@ public final class ConfigurationLoader implements PropertyChangeListener {
         return instance;
     }
 
-    public synchronized Configuration getConfiguration () throws CheckstyleException {
-        if (exception != null) {
-            throw exception;
+    public Configuration getConfiguration () throws CheckstyleException {
+        try {
+            synchronized (this) {
+                if (exception != null) {
+                    throw exception;
+                }
+                if (configuration == null) {
+                    updateConfiguration();
+                }
+                return configuration;
+            }
+        } finally {
+            updateListeners();
+        }
+    }
+
+    /**
+     * Returns the configuration the file should be checked with. That is
+     * the configuration of the project owning the file if the project has
+     * its own configuration file, the global one otherwise.
+     *
+     * @param fileObject the checked file
+     * @return the configuration for the file
+     * @throws CheckstyleException if the configuration can't be loaded
+     */
+    public Configuration getConfiguration (FileObject fileObject) throws CheckstyleException {
+        // looked up outside of the lock, the project query may take a while
+        String configFile = getProjectConfigFile(fileObject);
+        if (configFile == null) {
+            return getConfiguration();
+        }
+        return getConfiguration(configFile);
+    }
+
+    /**
+     * Returns the configuration using the given configuration file, the
+     * rest of the settings is the same as for the global configuration. The
+     * configuration file is watched for changes.
+     *
+     * @param configFile the checkstyle configuration file, url or resource
+     * @return the configuration using the given configuration file
+     * @throws CheckstyleException if the configuration can't be loaded
+     */
+    public Configuration getConfiguration (String configFile) throws CheckstyleException {
+        try {
+            synchronized (this) {
+                return getProjectConfiguration(configFile);
+            }
+        } finally {
+            updateListeners();
+        }
+    }
+
+    /* GuardedBy("this") */
+    private Configuration getProjectConfiguration (String configFile) throws CheckstyleException {
+        if (configuration == null && exception == null) {
+            updateConfiguration();
+        }
+
+        CheckstyleException failure = projectExceptions.get(configFile);
+        if (failure != null) {
+            throw failure;
+        }
+        Configuration config = projectConfigurations.get(configFile);
+        if (config == null) {
+            watchFile(configFile);
+            try {
+                config = createConfiguration(configFile);
+            } catch (CheckstyleException ex) {
+                projectExceptions.put(configFile, ex);
+                throw ex;
+            }
+            projectConfigurations.put(configFile, config);
+            // nobody has to be notified about the first use
+            publishedProjectConfigurations.put(configFile, config);
+        }
+        return config;
+    }
+
+    private String getProjectConfigFile (FileObject fileObject) {
+        Project project = FileOwnerQuery.getOwner(fileObject);
+        if (project == null) {
+            return null;
+        }
+
+        ProjectConfigFile configFile;
+        synchronized (projectConfigFiles) {
+            configFile = projectConfigFiles.get(project);
+            if (configFile == null) {
+                configFile = new ProjectConfigFile(FileUtil.toFile(project.getProjectDirectory()),
+                    ProjectUtils.getPreferences(project, ConfigurationLoader.class, true));
+                projectConfigFiles.put(project, configFile);
+            }
+        }
+        return configFile.getConfigFile();
+    }
+
+    /**
+     * Resolves the project configuration file preference. Urls including
+     * the <code>classpath:</code> resources and absolute paths are used as
+     * they are, relative paths are resolved against the project directory
+     * even if the file does not exist (yet) so it is watched.
+     *
+     * @param projectDirectory the project directory, may be <code>null</code>
+     * @param configFile the preference value, may be <code>null</code>
+     * @return the resolved configuration file or <code>null</code> if the
+     *             project does not use its own configuration
+     */
+    static String resolveConfigFile (File projectDirectory, String configFile) {
+        if (configFile == null || configFile.trim().isEmpty()) {
+            return null;
+        }
+        if (new File(configFile).isAbsolute() || URL_PATTERN.matcher(configFile).matches()) {
+            return configFile;
         }
-        if (configuration == null) {
-            reloadConfiguration();
+        if (projectDirectory == null) {
+            LOGGER.log(Level.INFO, "Unable to resolve {0} without the project directory", configFile);
+            return null;
         }
-        return configuration;
+        return FileUtil.normalizeFile(new File(projectDirectory, configFile)).getAbsolutePath();
+    }
+
+    /**
+     * Adds the listener notified when the configuration changes either
+     * because of the changed settings or the changed files. The listener is
+     * not notified when the reload yields the same configuration.
+     *
+     * @param listener the listener to add
+     */
+    public void addChangeListener (ChangeListener listener) {
+        changeSupport.addChangeListener(listener);
+    }
+
+    public void removeChangeListener (ChangeListener listener) {
+        changeSupport.removeChangeListener(listener);
     }
 
     @Override
     public void propertyChange (PropertyChangeEvent evt) {
         synchronized (this) {
-            configuration = null;
-            exception = null;
+            // the explicit change is the only way to get the fresh urls and resources
+            for (Iterator<Loaded<com.puppycrawl.tools.checkstyle.api.Configuration>> it =
+                loadedConfigurations.values().iterator(); it.hasNext();)
+            {
+                if (!it.next().byContent) {
+                    it.remove();
+                }
+            }
+        }
+        scheduleReload();
+    }
+
+    private synchronized void scheduleReload () {
+        if (closed) {
+            return;
+        }
+        configuration = null;
+        exception = null;
 
+        if (reloadTask != null) {
+            reloadTask.cancel(false);
+        }
+
+        reloadTask = EXECUTOR.schedule(new Runnable() {
+            @Override
+            public void run () {
+                boolean changed;
+                synchronized (ConfigurationLoader.this) {
+                    if (closed) {
+                        return;
+                    }
+                    updateConfiguration();
+                    changed = publishConfiguration();
+                }
+                updateListeners();
+                if (changed) {
+                    changeSupport.fireChange();
+                }
+            }
+        }, RELOAD_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reloads the whole configuration dropping all the cached parts.
+     */
+    void reloadConfiguration () {
+        synchronized (this) {
+            loadedProperties = null;
+            loadedConfigurations.clear();
+            loadedClassLoader = null;
+            updateConfiguration();
+            publishedConfiguration = configuration;
+            publishedProjectConfigurations.clear();
+            publishedProjectConfigurations.putAll(projectConfigurations);
+        }
+        updateListeners();
+    }
+
+    /**
+     * Resets the loader so it stops watching the configuration files and
+     * drops the pending reload.
+     */
+    public static void reset () {
+        ConfigurationLoader loader;
+        synchronized (ConfigurationLoader.class) {
+            loader = instance;
+            instance = null;
+        }
+        if (loader != null) {
+            CheckstyleSettings.getDefault().removePropertyChangeListener(loader.settingsListener);
+            loader.close();
+        }
+    }
+
+    private void close () {
+        synchronized (this) {
+            closed = true;
             if (reloadTask != null) {
                 reloadTask.cancel(false);
+                reloadTask = null;
             }
+            for (Iterator<Map.Entry<File, Boolean>> it = watchedFiles.entrySet().iterator(); it.hasNext();) {
+                unwatch(it.next());
+                it.remove();
+            }
+        }
+        updateListeners();
+    }
 
-            reloadTask = EXECUTOR.schedule(new Runnable() {
-                @Override
-                public void run () {
-                    reloadConfiguration();
-                }
-            }, RELOAD_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    /**
+     * Registers and unregisters the file listeners requested while holding
+     * the monitor of the loader. Must not be called while holding it.
+     */
+    private void updateListeners () {
+        if (!watchChangesPending) {
+            return;
         }
+        synchronized (listenerLock) {
+            List<WatchChange> changes;
+            synchronized (this) {
+                changes = new ArrayList<WatchChange>(watchChanges);
+                watchChanges.clear();
+                watchChangesPending = false;
+            }
+            for (WatchChange change : changes) {
+                change.apply(fileListener);
+            }
+        }
+    }
+
+    synchronized List<File> getWatchedFiles () {
+        return new ArrayList<File>(watchedFiles.keySet());
     }
 
-    synchronized void reloadConfiguration () {
+    /**
+     * Reloads the configuration. Only the parts affected by the changed
+     * settings or the changed files are loaded again.
+     */
+    /* GuardedBy("this") */
+    private void updateConfiguration () {
         configuration = null;
         exception = null;
 
+        previousConfigurations = loadedConfigurations;
+        loadedConfigurations = new HashMap<String, Loaded<com.puppycrawl.tools.checkstyle.api.Configuration>>();
+        Loaded<ClassLoader> previousClassLoader = loadedClassLoader;
+
+        Set<String> projectConfigFiles = new HashSet<String>(projectConfigurations.keySet());
+        projectConfigFiles.addAll(projectExceptions.keySet());
+        projectConfigurations.clear();
+        projectExceptions.clear();
+
+        values = CheckstyleSettings.getDefault().getValues();
+        updateWatchedFiles(values, projectConfigFiles);
         try {
-            CheckstyleSettings.Values values = CheckstyleSettings.getDefault().getValues();
+            configuration = createConfiguration(values.getCustomConfigFile());
+        } catch (CheckstyleException ex) {
+            exception = ex;
+            LOGGER.log(Level.INFO, null, ex);
+        }
 
-            Properties properties = (values.getCustomPropertyFile() != null) ?
-                loadProperties(values.getCustomPropertyFile(), System.getProperties()) :
-                System.getProperties();
+        // the project configurations in use are loaded right away to know
+        // whether they have changed
+        for (String configFile : projectConfigFiles) {
+            try {
+                getProjectConfiguration(configFile);
+            } catch (CheckstyleException ex) {
+                LOGGER.log(Level.INFO, null, ex);
+            }
+        }
+
+        if (!previousConfigurations.isEmpty() || loadedClassLoader != previousClassLoader) {
+            // pooled checkers are configured with the previous configuration
+            CheckerPool.getDefault().clear();
+        }
+        previousConfigurations = new HashMap<String, Loaded<com.puppycrawl.tools.checkstyle.api.Configuration>>();
+    }
+
+    /* GuardedBy("this") */
+    private Configuration createConfiguration (String configFile) throws CheckstyleException {
+        Properties properties = (values.getCustomPropertyFile() != null) ?
+            getProperties(values.getCustomPropertyFile()) :
+            System.getProperties();
+
+        Properties fresh = new Properties();
+        // doing this because of https://github.com/checkstyle/checkstyle/commit/7d513f0
+        for (Enumeration<?> e = properties.propertyNames(); e.hasMoreElements();) {
+            String name = (String) e.nextElement();
+            fresh.put(name, properties.getProperty(name));
+        }
+        fresh.putAll(values.getCustomProperties());
 
-            Properties fresh = new Properties();
-            // doing this because of https://github.com/checkstyle/checkstyle/commit/7d513f0
-            for (Enumeration<?> e = properties.propertyNames(); e.hasMoreElements();) {
-                String name = (String) e.nextElement();
-                fresh.put(name, properties.getProperty(name));
+        Pattern ignoredPathsPattern = null;
+        String patternValue = values.getIgnoredPathsPattern();
+        if (patternValue != null) {
+            try {
+                ignoredPathsPattern = Pattern.compile(patternValue);
+            } catch (PatternSyntaxException ex) {
+                LOGGER.log(Level.INFO, null, ex);
             }
-            fresh.putAll(values.getCustomProperties());
+        }
 
-            Pattern ignoredPathsPattern = null;
-            String patternValue = values.getIgnoredPathsPattern();
-            if (patternValue != null) {
-                try {
-                    ignoredPathsPattern = Pattern.compile(patternValue);
-                } catch (PatternSyntaxException ex) {
-                    LOGGER.log(Level.INFO, null, ex);
-                }
+        Pattern checkedPathsPattern = null;
+        String checkedPatternValue = values.getCheckedPathsPattern();
+        if (checkedPatternValue != null) {
+            try {
+                checkedPathsPattern = Pattern.compile(checkedPatternValue);
+            } catch (PatternSyntaxException ex) {
+                LOGGER.log(Level.INFO, null, ex);
             }
+        }
 
-            Pattern checkedPathsPattern = null;
-            String checkedPatternValue = values.getCheckedPathsPattern();
-            if (checkedPatternValue != null) {
-                try {
-                    checkedPathsPattern = Pattern.compile(checkedPatternValue);
-                } catch (PatternSyntaxException ex) {
-                    LOGGER.log(Level.INFO, null, ex);
+        Loaded<com.puppycrawl.tools.checkstyle.api.Configuration> checkstyleConfiguration =
+            getCheckstyleConfiguration(configFile, fresh);
+        Loaded<ClassLoader> classLoader = getClassLoader(values.getCustomClasspath());
+
+        String fingerprint = null;
+        if (checkstyleConfiguration.fingerprint != null) {
+            fingerprint = new Fingerprint().add(checkstyleConfiguration.fingerprint)
+                .add(classLoader.key).getValue();
+        }
+        return new Configuration(values.getCustomSeverity(),
+            checkstyleConfiguration.value, classLoader.value,
+            ignoredPathsPattern, checkedPathsPattern, fingerprint);
+    }
+
+    /**
+     * Remembers the current configuration as the one listeners know about.
+     *
+     * @return <code>true</code> if the current configuration differs from
+     *             the previously published one
+     */
+    /* GuardedBy("this") */
+    private boolean publishConfiguration () {
+        Map<String, Configuration> previous = new HashMap<String, Configuration>(publishedProjectConfigurations);
+        previous.put(null, publishedConfiguration);
+        Map<String, Configuration> current = new HashMap<String, Configuration>(projectConfigurations);
+        current.put(null, configuration);
+
+        Set<String> keys = new HashSet<String>(previous.keySet());
+        keys.addAll(current.keySet());
+
+        boolean changed = false;
+        boolean stale = false;
+        for (String key : keys) {
+            Configuration previousConfig = previous.get(key);
+            Configuration currentConfig = current.get(key);
+            changed |= isChanged(previousConfig, currentConfig);
+            stale |= previousConfig != null && (currentConfig == null
+                || previousConfig.getFingerprint() == null
+                || !previousConfig.getFingerprint().equals(currentConfig.getFingerprint()));
+        }
+
+        if (stale) {
+            // the results of the previous configuration won't be asked for again
+            ResultCache.getDefault().clear();
+        }
+
+        publishedConfiguration = configuration;
+        publishedProjectConfigurations.clear();
+        publishedProjectConfigurations.putAll(projectConfigurations);
+        return changed;
+    }
+
+    private static boolean isChanged (Configuration previous, Configuration current) {
+        if (previous == null || current == null) {
+            return previous != current;
+        }
+        return previous.getFingerprint() == null
+            || !previous.getFingerprint().equals(current.getFingerprint())
+            || previous.getCheckstyleConfiguration() != current.getCheckstyleConfiguration()
+            || previous.getCheckstyleClassLoader() != current.getCheckstyleClassLoader()
+            || previous.getSeverity() != current.getSeverity()
+            || !equals(previous.getIgnoredPathsPattern(), current.getIgnoredPathsPattern())
+            || !equals(previous.getCheckedPathsPattern(), current.getCheckedPathsPattern());
+    }
+
+    /* GuardedBy("this") */
+    private void updateWatchedFiles (CheckstyleSettings.Values values, Set<String> projectConfigFiles) {
+        Map<File, Boolean> files = new HashMap<File, Boolean>();
+        addWatchedFile(files, values.getCustomConfigFile());
+        addWatchedFile(files, values.getCustomPropertyFile());
+        for (File entry : values.getCustomClasspath()) {
+            addWatchedFile(files, entry.getPath());
+        }
+        for (String configFile : projectConfigFiles) {
+            addWatchedFile(files, configFile);
+        }
+        // the files referenced by the configurations being reloaded
+        for (Loaded<com.puppycrawl.tools.checkstyle.api.Configuration> loaded : previousConfigurations.values()) {
+            for (File reference : loaded.references) {
+                addWatchedFile(files, reference.getPath());
+            }
+        }
+
+        for (Iterator<Map.Entry<File, Boolean>> it = watchedFiles.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<File, Boolean> entry = it.next();
+            if (!entry.getValue().equals(files.get(entry.getKey()))) {
+                unwatch(entry);
+                it.remove();
+            }
+        }
+        for (Map.Entry<File, Boolean> entry : files.entrySet()) {
+            watch(entry);
+        }
+    }
+
+    /* GuardedBy("this") */
+    private void watchFile (String location) {
+        Map<File, Boolean> files = new HashMap<File, Boolean>();
+        addWatchedFile(files, location);
+        for (Map.Entry<File, Boolean> entry : files.entrySet()) {
+            watch(entry);
+        }
+    }
+
+    /* GuardedBy("this") */
+    private void watch (Map.Entry<File, Boolean> entry) {
+        if (watchedFiles.containsKey(entry.getKey())) {
+            return;
+        }
+        watchChanges.add(new WatchChange(entry.getKey(), entry.getValue(), true));
+        watchChangesPending = true;
+        watchedFiles.put(entry.getKey(), entry.getValue());
+    }
+
+    /* GuardedBy("this") */
+    private void unwatch (Map.Entry<File, Boolean> entry) {
+        watchChanges.add(new WatchChange(entry.getKey(), entry.getValue(), false));
+        watchChangesPending = true;
+    }
+
+    private static void addWatchedFile (Map<File, Boolean> files, String location) {
+        if (location == null) {
+            return;
+        }
+        // urls and relative locations are not watched
+        File file = new File(location);
+        if (file.isAbsolute()) {
+            file = FileUtil.normalizeFile(file);
+            // directories on the classpath contain the compiled checks
+            files.put(file, file.isDirectory());
+        }
+    }
+
+    private static boolean equals (Pattern first, Pattern second) {
+        if (first == null || second == null) {
+            return first == second;
+        }
+        return first.pattern().equals(second.pattern());
+    }
+
+    /* GuardedBy("this") */
+    private Properties getProperties (String propertyFile) {
+        String key = new Fingerprint().add(propertyFile).add(getContentHash(propertyFile)).getValue();
+        if (loadedProperties == null || !loadedProperties.key.equals(key)) {
+            loadedProperties = new Loaded<Properties>(key,
+                loadProperties(propertyFile, System.getProperties()), null);
+        } else {
+            LOGGER.log(Level.FINE, "Reusing properties {0}", propertyFile);
+        }
+        return loadedProperties.value;
+    }
+
+    /* GuardedBy("this") */
+    private Loaded<com.puppycrawl.tools.checkstyle.api.Configuration> getCheckstyleConfiguration (
+        String configurationFile, Properties properties) throws CheckstyleException
+    {
+        Properties expanded = configurationFile != null ? properties : System.getProperties();
+        Fingerprint fingerprint = new Fingerprint();
+        String contentHash = null;
+        if (configurationFile != null) {
+            // the same rules in different files are loaded just once
+            contentHash = getContentHash(configurationFile);
+            fingerprint.add(contentHash).add(contentHash == null ? configurationFile : null);
+        } else {
+            fingerprint.add((String) null).add((String) null);
+        }
+        String key = fingerprint.getValue();
+
+        Loaded<com.puppycrawl.tools.checkstyle.api.Configuration> loaded = loadedConfigurations.get(key);
+        if (loaded != null && !hasSameProperties(loaded, expanded)) {
+            loaded = null;
+        }
+        if (loaded == null) {
+            loaded = previousConfigurations.get(key);
+            if (loaded != null && !hasSameProperties(loaded, expanded)) {
+                LOGGER.log(Level.FINE, "Referenced properties of {0} changed", configurationFile);
+                loaded = null;
+            }
+            if (loaded != null) {
+                // the files referenced by the checks might have changed
+                String current = createFingerprint(loaded.value, new ArrayList<File>());
+                if (current == null ? loaded.fingerprint == null : current.equals(loaded.fingerprint)) {
+                    LOGGER.log(Level.FINE, "Reusing configuration {0}", configurationFile);
+                    previousConfigurations.remove(key);
+                } else {
+                    LOGGER.log(Level.FINE, "Referenced files of {0} changed", configurationFile);
+                    loaded = null;
                 }
             }
+            if (loaded == null) {
+                RecordingResolver resolver = new RecordingResolver(expanded);
+                com.puppycrawl.tools.checkstyle.api.Configuration checkstyleConfiguration =
+                    loadConfiguration(configurationFile, resolver);
+                List<File> references = new ArrayList<File>();
+                String checkstyleFingerprint = createFingerprint(checkstyleConfiguration, references);
+                loaded = new Loaded<com.puppycrawl.tools.checkstyle.api.Configuration>(
+                    key, checkstyleConfiguration, checkstyleFingerprint, references,
+                    resolver.getResolved(), configurationFile == null || contentHash != null);
+            }
+            loadedConfigurations.put(key, loaded);
+        }
+        for (File reference : loaded.references) {
+            watchFile(reference.getPath());
+        }
+        return loaded;
+    }
 
-            configuration = new Configuration(values.getCustomSeverity(),
-                loadConfiguration(values.getCustomConfigFile(), fresh),
-                createClassLoader(values.getCustomClasspath()), ignoredPathsPattern, checkedPathsPattern);
-        } catch (CheckstyleException ex) {
-            exception = ex;
-            LOGGER.log(Level.INFO, null, ex);
+    private static boolean hasSameProperties (Loaded<?> loaded, Properties properties) {
+        for (Map.Entry<String, String> entry : loaded.properties.entrySet()) {
+            if (!Objects.equals(entry.getValue(), properties.getProperty(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* GuardedBy("this") */
+    private Loaded<ClassLoader> getClassLoader (List<File> classpath) {
+        Fingerprint fingerprint = new Fingerprint();
+        for (File file : classpath) {
+            fingerprint.add(file.getAbsolutePath()).add(file.length()).add(file.lastModified());
+        }
+        String key = fingerprint.getValue();
+
+        if (loadedClassLoader == null || !loadedClassLoader.key.equals(key)) {
+            loadedClassLoader = new Loaded<ClassLoader>(key, createClassLoader(classpath), null);
         }
+        return loadedClassLoader;
     }
 
     private com.puppycrawl.tools.checkstyle.api.Configuration loadConfiguration (
-        String configurationFile, Properties properties)
+        String configurationFile, PropertyResolver resolver)
         throws CheckstyleException
     {
 
         if (configurationFile != null) {
             return com.puppycrawl.tools.checkstyle.ConfigurationLoader.loadConfiguration(
-                configurationFile, new PropertiesExpander(properties), IgnoredModulesOptions.OMIT);
+                configurationFile, resolver, IgnoredModulesOptions.OMIT);
         }
 
         InputStream is = getClass().getClassLoader()
@@ -181,8 +768,7 @@ public final class ConfigurationLoader implements PropertyChangeListener {
 
         try {
             return com.puppycrawl.tools.checkstyle.ConfigurationLoader.loadConfiguration(
-                new InputSource(is), new PropertiesExpander(System.getProperties()),
-                IgnoredModulesOptions.OMIT);
+                new InputSource(is), resolver, IgnoredModulesOptions.OMIT);
         } finally {
             try {
                 is.close();
@@ -208,6 +794,74 @@ public final class ConfigurationLoader implements PropertyChangeListener {
             Checker.class.getClassLoader());
     }
 
+    private static String createFingerprint (com.puppycrawl.tools.checkstyle.api.Configuration configuration,
+        List<File> references)
+    {
+        Fingerprint fingerprint = new Fingerprint();
+        fingerprint.add(Checker.class.getPackage().getImplementationVersion());
+        try {
+            addConfiguration(fingerprint, configuration, references);
+        } catch (CheckstyleException ex) {
+            LOGGER.log(Level.FINE, null, ex);
+            return null;
+        }
+        return fingerprint.getValue();
+    }
+
+    /**
+     * Returns the hash of the file content or <code>null</code> if the
+     * location is not a readable file.
+     */
+    private static String getContentHash (String location) {
+        File file = new File(location);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return new Fingerprint().add(file).getValue();
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, null, ex);
+            return null;
+        }
+    }
+
+    private static void addConfiguration (Fingerprint fingerprint,
+        com.puppycrawl.tools.checkstyle.api.Configuration configuration, List<File> references)
+        throws CheckstyleException
+    {
+        fingerprint.add(configuration.getName());
+
+        String[] names = configuration.getPropertyNames();
+        if (names != null) {
+            names = names.clone();
+            Arrays.sort(names);
+            for (String name : names) {
+                String value = configuration.getProperty(name);
+                fingerprint.add(name).add(value);
+                // header, suppression or import control files referenced by the checks
+                if (value != null && value.indexOf('\n') < 0) {
+                    File file = new File(value);
+                    if (file.isFile()) {
+                        references.add(file);
+                        try {
+                            fingerprint.add(file);
+                        } catch (IOException ex) {
+                            throw new CheckstyleException("Can't read " + value, ex);
+                        }
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<String, String> message : new TreeMap<String, String>(configuration.getMessages()).entrySet()) {
+            fingerprint.add(message.getKey()).add(message.getValue());
+        }
+
+        for (com.puppycrawl.tools.checkstyle.api.Configuration child : configuration.getChildren()) {
+            addConfiguration(fingerprint, child, references);
+        }
+    }
+
     private static Properties loadProperties (String propertyFile, Properties defaultProperties) {
         Properties properties = new Properties(defaultProperties);
         try {
@@ -226,4 +880,172 @@ public final class ConfigurationLoader implements PropertyChangeListener {
         }
         return properties;
     }
+
+    /**
+     * Reloads the configuration when any of the watched files changes.
+     */
+    private class FileListener extends FileChangeAdapter {
+
+        @Override
+        public void fileChanged (FileEvent fe) {
+            fileChange(fe);
+        }
+
+        @Override
+        public void fileDataCreated (FileEvent fe) {
+            fileChange(fe);
+        }
+
+        @Override
+        public void fileDeleted (FileEvent fe) {
+            fileChange(fe);
+        }
+
+        @Override
+        public void fileRenamed (FileRenameEvent fe) {
+            fileChange(fe);
+        }
+
+        private void fileChange (FileEvent fe) {
+            LOGGER.log(Level.FINE, "Configuration file changed {0}", fe.getFile());
+            scheduleReload();
+        }
+    }
+
+    /**
+     * The project configuration file preference of a single project. The
+     * preference is read once and kept up to date by listening on it.
+     */
+    final class ProjectConfigFile implements PreferenceChangeListener {
+
+        private final File projectDirectory;
+
+        private volatile String configFile;
+
+        ProjectConfigFile (File projectDirectory, Preferences preferences) {
+            this.projectDirectory = projectDirectory;
+            // held weakly, the cached instance lives as long as the project
+            preferences.addPreferenceChangeListener(WeakListeners.create(
+                PreferenceChangeListener.class, this, preferences));
+            this.configFile = resolveConfigFile(projectDirectory, preferences.get(PROP_PROJECT_CONFIG_FILE, null));
+        }
+
+        public String getConfigFile () {
+            return configFile;
+        }
+
+        @Override
+        public void preferenceChange (PreferenceChangeEvent evt) {
+            if (!PROP_PROJECT_CONFIG_FILE.equals(evt.getKey())) {
+                return;
+            }
+            String resolved = resolveConfigFile(projectDirectory, evt.getNewValue());
+            if (!Objects.equals(resolved, configFile)) {
+                LOGGER.log(Level.FINE, "Project configuration file changed to {0}", resolved);
+                configFile = resolved;
+                // the files of the project are checked with another configuration
+                changeSupport.fireChange();
+            }
+        }
+    }
+
+    /**
+     * The file listener to register or unregister.
+     */
+    private static final class WatchChange {
+
+        private final File file;
+
+        private final boolean recursive;
+
+        private final boolean add;
+
+        public WatchChange (File file, boolean recursive, boolean add) {
+            this.file = file;
+            this.recursive = recursive;
+            this.add = add;
+        }
+
+        public void apply (FileChangeListener listener) {
+            if (add && recursive) {
+                FileUtil.addRecursiveListener(listener, file);
+            } else if (add) {
+                FileUtil.addFileChangeListener(listener, file);
+            } else if (recursive) {
+                FileUtil.removeRecursiveListener(listener, file);
+            } else {
+                FileUtil.removeFileChangeListener(listener, file);
+            }
+        }
+    }
+
+    /**
+     * Expands the properties of the configuration and remembers the values
+     * of the properties referenced by the configuration.
+     */
+    private static final class RecordingResolver implements PropertyResolver {
+
+        private final PropertiesExpander expander;
+
+        private final Map<String, String> resolved = new HashMap<String, String>();
+
+        public RecordingResolver (Properties properties) {
+            this.expander = new PropertiesExpander(properties);
+        }
+
+        @Override
+        public String resolve (String name) {
+            String value = expander.resolve(name);
+            resolved.put(name, value);
+            return value;
+        }
+
+        public Map<String, String> getResolved () {
+            return resolved;
+        }
+    }
+
+    /**
+     * The loaded part of the configuration together with the key
+     * identifying the input it was loaded from.
+     */
+    private static final class Loaded<T> {
+
+        private final String key;
+
+        private final T value;
+
+        private final String fingerprint;
+
+        /**
+         * The files referenced by the loaded configuration.
+         */
+        private final List<File> references;
+
+        /**
+         * The values of the properties referenced by the loaded configuration.
+         */
+        private final Map<String, String> properties;
+
+        /**
+         * Whether the key identifies the loaded content, not just its location.
+         */
+        private final boolean byContent;
+
+        public Loaded (String key, T value, String fingerprint) {
+            this(key, value, fingerprint, Collections.<File>emptyList(),
+                Collections.<String, String>emptyMap(), true);
+        }
+
+        public Loaded (String key, T value, String fingerprint, List<File> references,
+            Map<String, String> properties, boolean byContent)
+        {
+            this.key = key;
+            this.value = value;
+            this.fingerprint = fingerprint;
+            this.references = references;
+            this.properties = properties;
+            this.byContent = byContent;
+        }
+    }
 }
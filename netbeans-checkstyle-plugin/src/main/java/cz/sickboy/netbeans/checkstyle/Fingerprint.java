@@ -0,0 +1,118 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Builds the hexadecimal SHA-1 digest of the added values.
+ *
+ * @author Petr Hejl
+ */
+public final class Fingerprint {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray(); // NOI18N
+
+    private final MessageDigest digest;
+
+    public Fingerprint () {
+        try {
+            digest = MessageDigest.getInstance("SHA-1"); // NOI18N
+        } catch (NoSuchAlgorithmException ex) {
+            // every java platform has to support SHA-1
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Returns the fingerprint of the given bytes.
+     *
+     * @param bytes the bytes to digest
+     * @return the fingerprint of the given bytes
+     */
+    public static String of (byte[] bytes) {
+        return new Fingerprint().add(bytes).getValue();
+    }
+
+    public Fingerprint add (byte[] bytes) {
+        digest.update(bytes);
+        return this;
+    }
+
+    public Fingerprint add (String value) {
+        if (value == null) {
+            digest.update((byte) 0);
+        } else {
+            digest.update((byte) 1);
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return this;
+    }
+
+    public Fingerprint add (long value) {
+        for (int i = 0; i < 8; i++) {
+            digest.update((byte) (value >>> (i * 8)));
+        }
+        return this;
+    }
+
+    /**
+     * Adds the content of the file.
+     *
+     * @param file the file to add
+     * @return this fingerprint
+     * @throws IOException if the file can't be read
+     */
+    public Fingerprint add (File file) throws IOException {
+        byte[] buffer = new byte[8192];
+        InputStream is = Files.newInputStream(file.toPath());
+        try {
+            int read;
+            while ((read = is.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            is.close();
+        }
+        return this;
+    }
+
+    /**
+     * Returns the hexadecimal form of the digest. The fingerprint is reset
+     * once this method was called.
+     *
+     * @return the hexadecimal form of the digest
+     */
+    public String getValue () {
+        byte[] bytes = digest.digest();
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
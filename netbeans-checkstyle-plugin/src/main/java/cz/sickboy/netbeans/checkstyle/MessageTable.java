@@ -0,0 +1,107 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Table of the canonical instances of the problem messages and check names.
+ * The same message is usually reported many times across the files, sharing
+ * a single instance keeps the cached results and the tasks small. The table
+ * is bounded, it starts over once full.
+ *
+ * @author Petr Hejl
+ */
+public final class MessageTable {
+
+    private static final int MAX_MESSAGES = Integer.getInteger(
+        "cz.sickboy.netbeans.checkstyle.messageTableSize", 10000); // NOI18N
+
+    /**
+     * Rough size of the string instance excluding its characters.
+     */
+    private static final int STRING_OVERHEAD = 40;
+
+    private static MessageTable instance;
+
+    private final int maxMessages;
+
+    private final ConcurrentMap<String, String> messages = new ConcurrentHashMap<String, String>();
+
+    private final AtomicLong savedBytes = new AtomicLong();
+
+    MessageTable (int maxMessages) {
+        this.maxMessages = maxMessages;
+    }
+
+    public static synchronized MessageTable getDefault () {
+        if (instance == null) {
+            instance = new MessageTable(MAX_MESSAGES);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the canonical instance of the message.
+     *
+     * @param message the message, may be <code>null</code>
+     * @return the instance equal to the message
+     */
+    public String intern (String message) {
+        if (message == null) {
+            return null;
+        }
+
+        String canonical = messages.get(message);
+        if (canonical != null) {
+            if (canonical != message) {
+                savedBytes.addAndGet(STRING_OVERHEAD + 2L * message.length());
+            }
+            return canonical;
+        }
+
+        if (messages.size() >= maxMessages) {
+            messages.clear();
+        }
+        canonical = messages.putIfAbsent(message, message);
+        return canonical != null ? canonical : message;
+    }
+
+    /**
+     * Returns the estimate of the heap saved by sharing the messages so far.
+     *
+     * @return the estimate of the saved heap in bytes
+     */
+    public long getSavedBytes () {
+        return savedBytes.get();
+    }
+
+    /**
+     * Removes all the messages from the table.
+     */
+    public void clear () {
+        messages.clear();
+    }
+
+    int getSize () {
+        return messages.size();
+    }
+}
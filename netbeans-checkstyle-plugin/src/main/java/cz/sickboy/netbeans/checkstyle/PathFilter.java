@@ -0,0 +1,240 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * Decides whether the file is checked according to the ignored and checked
+ * paths patterns. The decision is cached per path, the filter belongs to
+ * a single {@link Configuration} so it is dropped together with the patterns.
+ * The common patterns consisting just of the literal alternatives such as
+ * <code>.*&#47;generated/.*|.*Test\.java</code> are evaluated without
+ * the regular expression engine.
+ *
+ * @author Petr Hejl
+ */
+public final class PathFilter {
+
+    private static final int MAX_PATHS = Integer.getInteger(
+        "cz.sickboy.netbeans.checkstyle.pathFilterCacheSize", 10000); // NOI18N
+
+    private static final String ANY = ".*"; // NOI18N
+
+    private static final String META_CHARACTERS = "\\.[]{}()*+?^$|"; // NOI18N
+
+    private final Matcher ignored;
+
+    private final Matcher checked;
+
+    private final int maxPaths;
+
+    private final ConcurrentMap<String, Boolean> decisions = new ConcurrentHashMap<String, Boolean>();
+
+    public PathFilter (Pattern ignoredPathsPattern, Pattern checkedPathsPattern) {
+        this(ignoredPathsPattern, checkedPathsPattern, MAX_PATHS);
+    }
+
+    PathFilter (Pattern ignoredPathsPattern, Pattern checkedPathsPattern, int maxPaths) {
+        this.ignored = ignoredPathsPattern != null ? createMatcher(ignoredPathsPattern) : null;
+        this.checked = checkedPathsPattern != null ? createMatcher(checkedPathsPattern) : null;
+        this.maxPaths = maxPaths;
+    }
+
+    /**
+     * Returns whether the file of the given path should be checked.
+     *
+     * @param path the absolute path of the file
+     * @return <code>true</code> if the file is not ignored and it is checked
+     */
+    public boolean isChecked (String path) {
+        if (ignored == null && checked == null) {
+            return true;
+        }
+
+        Boolean decision = decisions.get(path);
+        if (decision == null) {
+            decision = (ignored == null || !ignored.matches(path))
+                && (checked == null || checked.matches(path));
+            if (decisions.size() >= maxPaths) {
+                decisions.clear();
+            }
+            decisions.put(path, decision);
+        }
+        return decision;
+    }
+
+    int getCachedCount () {
+        return decisions.size();
+    }
+
+    /**
+     * Creates the matcher equivalent to {@link java.util.regex.Matcher#matches()}
+     * of the pattern.
+     *
+     * @param pattern the pattern to match
+     * @return the matcher of the pattern
+     */
+    static Matcher createMatcher (Pattern pattern) {
+        if (pattern.flags() == 0) {
+            Matcher literal = LiteralMatcher.create(pattern.pattern());
+            if (literal != null) {
+                return literal;
+            }
+        }
+        return new RegexMatcher(pattern);
+    }
+
+    interface Matcher {
+
+        boolean matches (String path);
+
+    }
+
+    private static final class RegexMatcher implements Matcher {
+
+        private final Pattern pattern;
+
+        public RegexMatcher (Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        public boolean matches (String path) {
+            return pattern.matcher(path).matches();
+        }
+    }
+
+    /**
+     * Matches the alternatives of the form <code>literal</code>,
+     * <code>.*literal</code>, <code>literal.*</code> and
+     * <code>.*literal.*</code>.
+     */
+    private static final class LiteralMatcher implements Matcher {
+
+        private final List<String> equal = new ArrayList<String>();
+
+        private final List<String> prefixes = new ArrayList<String>();
+
+        private final List<String> suffixes = new ArrayList<String>();
+
+        private final List<String> infixes = new ArrayList<String>();
+
+        private LiteralMatcher () {
+            super();
+        }
+
+        /**
+         * Creates the matcher of the regular expression.
+         *
+         * @param regex the regular expression
+         * @return the matcher or <code>null</code> if the expression is not
+         *             just the alternation of the literals
+         */
+        public static LiteralMatcher create (String regex) {
+            LiteralMatcher matcher = new LiteralMatcher();
+            for (String alternative : split(regex)) {
+                boolean anyStart = alternative.startsWith(ANY);
+                if (anyStart) {
+                    alternative = alternative.substring(ANY.length());
+                }
+                boolean anyEnd = alternative.endsWith(ANY) && !alternative.endsWith("\\" + ANY); // NOI18N
+                if (anyEnd) {
+                    alternative = alternative.substring(0, alternative.length() - ANY.length());
+                }
+
+                String literal = unescape(alternative);
+                if (literal == null) {
+                    return null;
+                }
+                if (anyStart && anyEnd) {
+                    matcher.infixes.add(literal);
+                } else if (anyStart) {
+                    matcher.suffixes.add(literal);
+                } else if (anyEnd) {
+                    matcher.prefixes.add(literal);
+                } else {
+                    matcher.equal.add(literal);
+                }
+            }
+            return matcher;
+        }
+
+        @Override
+        public boolean matches (String path) {
+            for (String value : infixes) {
+                if (path.contains(value)) {
+                    return true;
+                }
+            }
+            for (String value : prefixes) {
+                if (path.startsWith(value)) {
+                    return true;
+                }
+            }
+            for (String value : suffixes) {
+                if (path.endsWith(value)) {
+                    return true;
+                }
+            }
+            return equal.contains(path);
+        }
+
+        private static List<String> split (String regex) {
+            List<String> alternatives = new ArrayList<String>();
+            int start = 0;
+            for (int i = 0; i < regex.length(); i++) {
+                char c = regex.charAt(i);
+                if (c == '\\') {
+                    i++;
+                } else if (c == '|') {
+                    alternatives.add(regex.substring(start, i));
+                    start = i + 1;
+                }
+            }
+            alternatives.add(regex.substring(start));
+            return alternatives;
+        }
+
+        private static String unescape (String value) {
+            StringBuilder literal = new StringBuilder(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '\\') {
+                    if (++i >= value.length()) {
+                        return null;
+                    }
+                    c = value.charAt(i);
+                    // escaped letters and digits are classes or references
+                    if (Character.isLetterOrDigit(c)) {
+                        return null;
+                    }
+                } else if (META_CHARACTERS.indexOf(c) >= 0) {
+                    return null;
+                }
+                literal.append(c);
+            }
+            return literal.toString();
+        }
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle;
+
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openide.modules.Places;
+
+/**
+ * Stores the checkstyle problems of the files in the user cache directory so
+ * unchanged files don't have to be checked again after the restart. The entry
+ * is valid only for the same content of the file and the same configuration
+ * fingerprint. The entries written with another configuration are dropped
+ * once read. The number of entries is bounded, the least recently used ones
+ * are removed on startup and periodically while writing.
+ *
+ * @author Petr Hejl
+ * @see Configuration#getFingerprint()
+ */
+public final class PersistentResultCache {
+
+    private static final Logger LOGGER = Logger.getLogger(PersistentResultCache.class.getName());
+
+    private static final String CACHE_DIRECTORY = "checkstyle/results"; // NOI18N
+
+    /**
+     * The version of the entry format, the entries of other versions are
+     * dropped once read.
+     */
+    private static final int VERSION = 2;
+
+    private static final String TEMP_SUFFIX = ".tmp"; // NOI18N
+
+    /**
+     * The age after which the temporary file is considered to be left behind
+     * by an interrupted write.
+     */
+    private static final long TEMP_MAX_AGE_MILLIS = 60 * 60 * 1000;
+
+    /**
+     * The maximal number of the entries kept in the cache directory.
+     */
+    private static final int MAX_ENTRIES = Integer.getInteger(
+        "cz.sickboy.netbeans.checkstyle.persistentCacheSize", 10000); // NOI18N
+
+    private static final SeverityLevel[] SEVERITIES = SeverityLevel.values();
+
+    private static PersistentResultCache instance;
+
+    private final File directory;
+
+    private final int maxEntries;
+
+    private final AtomicInteger writes = new AtomicInteger();
+
+    PersistentResultCache (File directory) {
+        this(directory, MAX_ENTRIES);
+    }
+
+    PersistentResultCache (File directory, int maxEntries) {
+        this.directory = directory;
+        this.maxEntries = maxEntries;
+    }
+
+    public static synchronized PersistentResultCache getDefault () {
+        if (instance == null) {
+            instance = new PersistentResultCache(Places.getCacheSubdirectory(CACHE_DIRECTORY));
+            instance.trim();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the cached problems of the file.
+     *
+     * @param file the checked file
+     * @param contentHash the fingerprint of the current content of the file
+     * @param fingerprint the fingerprint of the configuration
+     * @return the cached problems or <code>null</code> if there are none valid
+     */
+    public List<CheckstyleViolation> get (File file, String contentHash, String fingerprint) {
+        if (fingerprint == null) {
+            return null;
+        }
+
+        File entry = getEntry(file);
+        boolean stale = false;
+        try {
+            DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(entry)));
+            try {
+                if (is.readInt() != VERSION) {
+                    stale = true;
+                    return null;
+                }
+                long limit = entry.length();
+                if (!file.getAbsolutePath().equals(readString(is, limit))
+                    || !contentHash.equals(readString(is, limit)))
+                {
+                    return null;
+                }
+                // written with the configuration no longer used
+                if (!fingerprint.equals(readString(is, limit))) {
+                    stale = true;
+                    return null;
+                }
+
+                MessageTable table = MessageTable.getDefault();
+                int count = is.readInt();
+                List<CheckstyleViolation> violations = new ArrayList<CheckstyleViolation>(count);
+                for (int i = 0; i < count; i++) {
+                    int line = is.readInt();
+                    int column = is.readInt();
+                    SeverityLevel severity = SEVERITIES[is.readByte()];
+                    String message = table.intern(readString(is, limit));
+                    String source = table.intern(readString(is, limit));
+                    violations.add(new CheckstyleViolation(line, column, severity, message, source));
+                }
+                // the timestamp orders the entries for trimming
+                if (!entry.setLastModified(System.currentTimeMillis())) {
+                    LOGGER.log(Level.FINE, "Could not touch {0}", entry);
+                }
+                return violations;
+            } finally {
+                is.close();
+                if (stale) {
+                    delete(entry);
+                }
+            }
+        } catch (FileNotFoundException ex) {
+            return null;
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.log(Level.FINE, "Corrupted cache entry " + entry, ex);
+            delete(entry);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the problems of the file.
+     *
+     * @param file the checked file
+     * @param contentHash the fingerprint of the checked content of the file
+     * @param fingerprint the fingerprint of the configuration
+     * @param violations all the problems reported for the file
+     */
+    public void put (File file, String contentHash, String fingerprint, List<CheckstyleViolation> violations) {
+        if (fingerprint == null) {
+            return;
+        }
+
+        File entry = getEntry(file);
+        File temp = null;
+        try {
+            temp = File.createTempFile(entry.getName(), TEMP_SUFFIX, directory);
+            DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                os.writeInt(VERSION);
+                writeString(os, file.getAbsolutePath());
+                writeString(os, contentHash);
+                writeString(os, fingerprint);
+                os.writeInt(violations.size());
+                for (CheckstyleViolation violation : violations) {
+                    os.writeInt(violation.getLine());
+                    os.writeInt(violation.getColumn());
+                    os.writeByte(violation.getSeverity().ordinal());
+                    writeString(os, violation.getMessage());
+                    writeString(os, violation.getSource() != null ? violation.getSource() : ""); // NOI18N
+                }
+            } finally {
+                os.close();
+            }
+            if (!temp.renameTo(entry)) {
+                // windows can't rename over an existing file
+                if (!entry.delete() || !temp.renameTo(entry)) {
+                    LOGGER.log(Level.FINE, "Could not store cache entry {0}", entry);
+                }
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, null, ex);
+        } finally {
+            if (temp != null && temp.exists() && !temp.delete()) {
+                LOGGER.log(Level.FINE, "Could not delete {0}", temp);
+            }
+        }
+
+        if (writes.incrementAndGet() % Math.max(1, maxEntries / 10) == 0) {
+            trim();
+        }
+    }
+
+    /**
+     * Removes the least recently used entries above the limit. The temporary
+     * files being written are not entries, only those left behind by an
+     * interrupted write are removed.
+     */
+    void trim () {
+        final long tempExpired = System.currentTimeMillis() - TEMP_MAX_AGE_MILLIS;
+        File[] entries = directory.listFiles(new FileFilter() {
+
+            @Override
+            public boolean accept (File file) {
+                if (!file.getName().endsWith(TEMP_SUFFIX)) {
+                    return true;
+                }
+                if (file.lastModified() < tempExpired) {
+                    delete(file);
+                }
+                return false;
+            }
+        });
+        if (entries == null || entries.length <= maxEntries) {
+            return;
+        }
+
+        final long[] modified = new long[entries.length];
+        Integer[] order = new Integer[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            modified[i] = entries[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+
+            @Override
+            public int compare (Integer o1, Integer o2) {
+                return Long.compare(modified[o1], modified[o2]);
+            }
+        });
+
+        int removed = entries.length - maxEntries;
+        for (int i = 0; i < removed; i++) {
+            delete(entries[order[i]]);
+        }
+        LOGGER.log(Level.FINE, "Trimmed {0} cache entries", removed); // NOI18N
+    }
+
+    /**
+     * Removes all the cached entries.
+     */
+    public void clear () {
+        File[] entries = directory.listFiles();
+        if (entries == null) {
+            return;
+        }
+        for (File entry : entries) {
+            delete(entry);
+        }
+    }
+
+    private static void delete (File entry) {
+        if (!entry.delete()) {
+            LOGGER.log(Level.FINE, "Could not delete {0}", entry);
+        }
+    }
+
+    /**
+     * Writes the string as the length prefixed UTF-8 bytes, unlike
+     * {@link DataOutputStream#writeUTF(String)} not limited to 64KB.
+     */
+    private static void writeString (DataOutputStream os, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        os.writeInt(bytes.length);
+        os.write(bytes);
+    }
+
+    private static String readString (DataInputStream is, long limit) throws IOException {
+        int length = is.readInt();
+        // the corrupted length must not allocate the huge array
+        if (length < 0 || length > limit) {
+            throw new IOException("Invalid string length " + length); // NOI18N
+        }
+        byte[] bytes = new byte[length];
+        is.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private File getEntry (File file) {
+        return new File(directory, new Fingerprint().add(file.getAbsolutePath()).getValue());
+    }
+}
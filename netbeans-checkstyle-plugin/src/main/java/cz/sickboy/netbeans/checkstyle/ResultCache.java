@@ -0,0 +1,216 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * In-memory cache of the checkstyle problems shared by the editor and the
+ * task list. The entries are keyed by the file, its content and the
+ * configuration. The cache retains a bounded total number of problems, the
+ * least recently used entries are evicted first. The problems are kept in
+ * the {@link CompactViolationList}. Misses fall back to the
+ * {@link PersistentResultCache}.
+ *
+ * @author Petr Hejl
+ */
+public final class ResultCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ResultCache.class.getName());
+
+    private static final int MAX_VIOLATIONS = Integer.getInteger(
+        "cz.sickboy.netbeans.checkstyle.resultCacheSize", 100000); // NOI18N
+
+    private static ResultCache instance;
+
+    private final int maxViolations;
+
+    private final PersistentResultCache persistentCache;
+
+    /* GuardedBy("this") */
+    private final LinkedHashMap<Key, List<CheckstyleViolation>> entries =
+        new LinkedHashMap<Key, List<CheckstyleViolation>>(16, 0.75f, true);
+
+    /* GuardedBy("this") */
+    private int retained;
+
+    ResultCache (int maxViolations, PersistentResultCache persistentCache) {
+        this.maxViolations = maxViolations;
+        this.persistentCache = persistentCache;
+    }
+
+    public static synchronized ResultCache getDefault () {
+        if (instance == null) {
+            instance = new ResultCache(MAX_VIOLATIONS, PersistentResultCache.getDefault());
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the cached problems of the file.
+     *
+     * @param file the checked file
+     * @param contentHash the fingerprint of the current content of the file
+     * @param configuration the configuration used for checking
+     * @return the unmodifiable list of all the cached problems or
+     *             <code>null</code> if there are none valid
+     */
+    public List<CheckstyleViolation> get (File file, String contentHash, Configuration configuration) {
+        Key key = new Key(file, contentHash, configuration);
+        synchronized (this) {
+            List<CheckstyleViolation> violations = entries.get(key);
+            if (violations != null) {
+                return violations;
+            }
+        }
+
+        if (persistentCache != null) {
+            List<CheckstyleViolation> violations = persistentCache.get(
+                file, contentHash, configuration.getFingerprint());
+            if (violations != null) {
+                return store(key, violations);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stores all the problems of the file both in memory and on disk.
+     *
+     * @param file the checked file
+     * @param contentHash the fingerprint of the checked content of the file
+     * @param configuration the configuration used for checking
+     * @param violations all the problems reported for the file
+     * @return the unmodifiable list of the stored problems
+     */
+    public List<CheckstyleViolation> put (File file, String contentHash, Configuration configuration,
+        List<CheckstyleViolation> violations)
+    {
+        return put(file, contentHash, configuration, violations, true);
+    }
+
+    /**
+     * Stores all the problems of the file.
+     *
+     * @param file the checked file
+     * @param contentHash the fingerprint of the checked content of the file
+     * @param configuration the configuration used for checking
+     * @param violations all the problems reported for the file
+     * @param persist whether the problems are written to the
+     *             {@link PersistentResultCache} as well, only the problems
+     *             of the saved content are worth it
+     * @return the unmodifiable list of the stored problems
+     */
+    public List<CheckstyleViolation> put (File file, String contentHash, Configuration configuration,
+        List<CheckstyleViolation> violations, boolean persist)
+    {
+        if (persist && persistentCache != null) {
+            persistentCache.put(file, contentHash, configuration.getFingerprint(), violations);
+        }
+        return store(new Key(file, contentHash, configuration), violations);
+    }
+
+    /**
+     * Removes all the entries held in memory.
+     */
+    public synchronized void clear () {
+        entries.clear();
+        retained = 0;
+    }
+
+    synchronized int getRetainedCount () {
+        return retained;
+    }
+
+    private List<CheckstyleViolation> store (Key key, List<CheckstyleViolation> violations) {
+        List<CheckstyleViolation> stored = CompactViolationList.create(violations);
+        int weight = getWeight(stored);
+        if (weight > maxViolations) {
+            return stored;
+        }
+
+        synchronized (this) {
+            List<CheckstyleViolation> previous = entries.put(key, stored);
+            if (previous != null) {
+                retained -= getWeight(previous);
+            }
+            retained += weight;
+
+            Iterator<List<CheckstyleViolation>> it = entries.values().iterator();
+            while (retained > maxViolations && it.hasNext()) {
+                retained -= getWeight(it.next());
+                it.remove();
+            }
+            if (LOGGER.isLoggable(Level.FINEST)) {
+                LOGGER.log(Level.FINEST, "Retained problems: {0}, shared messages saved {1} bytes", // NOI18N
+                    new Object[] {retained, MessageTable.getDefault().getSavedBytes()});
+            }
+        }
+        return stored;
+    }
+
+    private static int getWeight (List<CheckstyleViolation> violations) {
+        // even the empty result costs something
+        return violations.size() + 1;
+    }
+
+    private static final class Key {
+
+        private final String path;
+
+        private final String contentHash;
+
+        private final Object configuration;
+
+        public Key (File file, String contentHash, Configuration configuration) {
+            this.path = file.getAbsolutePath();
+            this.contentHash = contentHash;
+            // equal fingerprints produce equal results
+            this.configuration = configuration.getFingerprint() != null
+                ? configuration.getFingerprint() : configuration;
+        }
+
+        @Override
+        public boolean equals (Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return path.equals(other.path) && contentHash.equals(other.contentHash)
+                && configuration.equals(other.configuration);
+        }
+
+        @Override
+        public int hashCode () {
+            int hash = 3;
+            hash = 53 * hash + path.hashCode();
+            hash = 53 * hash + contentHash.hashCode();
+            hash = 53 * hash + configuration.hashCode();
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle;
+
+import com.puppycrawl.tools.checkstyle.api.FileText;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The text of the file to check held in memory. The text may come from
+ * the open document as well as from the disk. The hash covers the line
+ * terminators as well, as some checks report the missing terminator of
+ * the last line or the kind of the terminators.
+ *
+ * @author Petr Hejl
+ * @see CancellableChecker#process(File, FileText)
+ */
+public final class SourceText {
+
+    private static final long NONE = 0;
+
+    private static final long LF = 1;
+
+    private static final long CR = 2;
+
+    private static final long CRLF = 3;
+
+    private final File file;
+
+    private final List<String> lines;
+
+    private final String hash;
+
+    private SourceText (File file, List<String> lines, String hash) {
+        this.file = file;
+        this.lines = lines;
+        this.hash = hash;
+    }
+
+    /**
+     * Creates the source of the file from the given text.
+     *
+     * @param file the file the text belongs to
+     * @param text the text of the file
+     * @return the source of the file
+     */
+    public static SourceText create (File file, CharSequence text) {
+        List<String> lines = new ArrayList<String>();
+        Fingerprint fingerprint = new Fingerprint();
+
+        int start = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                String line = text.subSequence(start, i).toString();
+                lines.add(line);
+                fingerprint.add(line);
+                if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+                    fingerprint.add(CRLF);
+                    i++;
+                } else {
+                    fingerprint.add(c == '\n' ? LF : CR);
+                }
+                start = i + 1;
+            }
+        }
+        // same as BufferedReader, the terminated last line is not followed by an empty one
+        if (start < length) {
+            String line = text.subSequence(start, length).toString();
+            lines.add(line);
+            fingerprint.add(line);
+            fingerprint.add(NONE);
+        }
+
+        return new SourceText(file, Collections.unmodifiableList(lines), fingerprint.getValue());
+    }
+
+    public File getFile () {
+        return file;
+    }
+
+    /**
+     * Returns the fingerprint of the lines of the text including their
+     * terminators.
+     *
+     * @return the fingerprint of the text
+     */
+    public String getHash () {
+        return hash;
+    }
+
+    public List<String> getLines () {
+        return lines;
+    }
+
+    public FileText getFileText () {
+        return new FileText(file, lines);
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle.batch;
+
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import cz.sickboy.netbeans.checkstyle.CancellableChecker;
+import cz.sickboy.netbeans.checkstyle.CheckerPool;
+import cz.sickboy.netbeans.checkstyle.CheckstyleViolation;
+import cz.sickboy.netbeans.checkstyle.Configuration;
+import cz.sickboy.netbeans.checkstyle.ConfigurationLoader;
+import cz.sickboy.netbeans.checkstyle.SourceText;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks the whole source trees outside of the IDE with the same effective
+ * configuration, path patterns, severity and pooled checkers as the editor
+ * and the task list. The files are checked in parallel, each thread uses
+ * a single checker for all the files it checks. Unless the encoding is given
+ * the files are read with the charset of the checkstyle configuration.
+ * <p>
+ * Usage: <code>BatchChecker [-c config] [-t threads] [-e encoding] [-o output] directory...</code>
+ *
+ * @author Petr Hejl
+ */
+public final class BatchChecker {
+
+    private final Configuration configuration;
+
+    private final int threads;
+
+    /* may be null */
+    private final Charset charset;
+
+    /**
+     * Creates the checker of the source trees.
+     *
+     * @param configuration the configuration used for checking
+     * @param threads the number of the threads checking the files
+     * @param charset the charset of the files or <code>null</code> to use
+     *             the charset of the checkstyle configuration
+     */
+    public BatchChecker (Configuration configuration, int threads, Charset charset) {
+        this.configuration = configuration;
+        this.threads = Math.max(1, threads);
+        this.charset = charset;
+    }
+
+    /**
+     * Runs the check from the command line. The exit code is <code>0</code>
+     * when there are no problems, <code>1</code> when some problems were
+     * reported and <code>2</code> when some files could not be checked.
+     *
+     * @param args the command line arguments
+     * @throws Exception if the check can't be run
+     */
+    public static void main (String[] args) throws Exception {
+        String configFile = null;
+        String output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Charset charset = null;
+        List<File> roots = new ArrayList<File>();
+
+        for (int i = 0; i < args.length; i++) {
+            if ("-c".equals(args[i]) && i + 1 < args.length) { // NOI18N
+                configFile = args[++i];
+            } else if ("-t".equals(args[i]) && i + 1 < args.length) { // NOI18N
+                threads = Integer.parseInt(args[++i]);
+            } else if ("-e".equals(args[i]) && i + 1 < args.length) { // NOI18N
+                charset = Charset.forName(args[++i]);
+            } else if ("-o".equals(args[i]) && i + 1 < args.length) { // NOI18N
+                output = args[++i];
+            } else {
+                roots.add(new File(args[i]));
+            }
+        }
+        if (roots.isEmpty()) {
+            System.err.println("Usage: BatchChecker [-c config] [-t threads] [-e encoding] [-o output] directory..."); // NOI18N
+            System.exit(2);
+        }
+
+        ConfigurationLoader loader = ConfigurationLoader.getDefault();
+        Configuration configuration = configFile != null
+            ? loader.getConfiguration(configFile) : loader.getConfiguration();
+
+        Result result = new BatchChecker(configuration, threads, charset).check(roots);
+        Charset outputCharset = charset != null ? charset : Charset.defaultCharset();
+        Writer writer = output != null
+            ? new OutputStreamWriter(new FileOutputStream(output), outputCharset)
+            : new OutputStreamWriter(System.out, outputCharset);
+        try {
+            result.write(writer);
+        } finally {
+            writer.flush();
+            if (output != null) {
+                writer.close();
+            }
+        }
+
+        if (!result.getFailures().isEmpty()) {
+            System.exit(2);
+        }
+        System.exit(result.getViolations().isEmpty() ? 0 : 1);
+    }
+
+    /**
+     * Checks all the java files in the given files and directories.
+     *
+     * @param roots the files and directories to check
+     * @return the problems reported for the checked files
+     * @throws InterruptedException if interrupted while waiting for the checks
+     */
+    public Result check (List<File> roots) throws InterruptedException {
+        List<File> files = new ArrayList<File>();
+        for (File root : roots) {
+            collect(root.getAbsoluteFile(), files);
+        }
+
+        Result result = new Result();
+        Queue<File> pending = new ConcurrentLinkedQueue<File>(files);
+        int workers = Math.min(threads, Math.max(1, files.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>(workers);
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(new Worker(pending, result)));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    throw new IllegalStateException(ex.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    private void collect (File file, List<File> files) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                Arrays.sort(children);
+                for (File child : children) {
+                    collect(child, files);
+                }
+            }
+        } else if (file.isFile() && file.getName().endsWith(".java") && configuration.isChecked(file)) { // NOI18N
+            files.add(file);
+        }
+    }
+
+    private List<CheckstyleViolation> check (CancellableChecker checker, File file, Charset encoding)
+        throws CheckstyleException, IOException
+    {
+        SourceText source = SourceText.create(file, new String(Files.readAllBytes(file.toPath()), encoding));
+        CheckstyleViolation.Collector listener = new CheckstyleViolation.Collector();
+        checker.addListener(listener);
+        try {
+            checker.process(source.getFile(), source.getFileText());
+        } finally {
+            checker.removeListener(listener);
+        }
+
+        List<CheckstyleViolation> violations = new ArrayList<CheckstyleViolation>();
+        for (CheckstyleViolation violation : listener.getResults()) {
+            if (configuration.getSeverity().include(violation.getSeverity())) {
+                violations.add(violation);
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * Checks the pending files one by one with a single checker until there
+     * are none left.
+     */
+    private final class Worker implements Runnable {
+
+        private final Queue<File> pending;
+
+        private final Result result;
+
+        public Worker (Queue<File> pending, Result result) {
+            this.pending = pending;
+            this.result = result;
+        }
+
+        @Override
+        public void run () {
+            ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+            try {
+                Thread.currentThread().setContextClassLoader(configuration.getCheckstyleClassLoader());
+                CheckerPool pool = CheckerPool.getDefault();
+                CancellableChecker checker;
+                try {
+                    checker = pool.acquireChecker(configuration, null, null);
+                } catch (CheckstyleException ex) {
+                    for (File file = pending.poll(); file != null; file = pending.poll()) {
+                        result.addFailure(file, ex);
+                    }
+                    return;
+                }
+                try {
+                    Charset encoding = charset != null ? charset : Charset.forName(checker.getCharset());
+                    for (File file = pending.poll(); file != null; file = pending.poll()) {
+                        try {
+                            result.addViolations(file, check(checker, file, encoding));
+                        } catch (CheckstyleException | IOException | RuntimeException ex) {
+                            result.addFailure(file, ex);
+                        }
+                    }
+                } finally {
+                    pool.releaseChecker(checker);
+                }
+            } finally {
+                Thread.currentThread().setContextClassLoader(originalClassLoader);
+            }
+        }
+    }
+
+    /**
+     * The problems of the checked files.
+     */
+    public static final class Result {
+
+        private final SortedMap<File, List<CheckstyleViolation>> violations =
+            new TreeMap<File, List<CheckstyleViolation>>();
+
+        private final SortedMap<File, Throwable> failures = new TreeMap<File, Throwable>();
+
+        Result () {
+            super();
+        }
+
+        synchronized void addViolations (File file, List<CheckstyleViolation> fileViolations) {
+            if (!fileViolations.isEmpty()) {
+                violations.put(file, fileViolations);
+            }
+        }
+
+        synchronized void addFailure (File file, Throwable failure) {
+            failures.put(file, failure);
+        }
+
+        /**
+         * Returns the problems of the files with at least one problem.
+         *
+         * @return the problems keyed by the file
+         */
+        public SortedMap<File, List<CheckstyleViolation>> getViolations () {
+            return Collections.unmodifiableSortedMap(violations);
+        }
+
+        /**
+         * Returns the files that could not be checked.
+         *
+         * @return the failures keyed by the file
+         */
+        public SortedMap<File, Throwable> getFailures () {
+            return Collections.unmodifiableSortedMap(failures);
+        }
+
+        /**
+         * Writes the problems in the format similar to the checkstyle plain output.
+         *
+         * @param writer the writer to write to
+         */
+        public void write (Writer writer) {
+            PrintWriter out = new PrintWriter(writer);
+            for (Map.Entry<File, List<CheckstyleViolation>> entry : violations.entrySet()) {
+                for (CheckstyleViolation violation : entry.getValue()) {
+                    out.print('[');
+                    out.print(violation.getSeverity().getName().toUpperCase(Locale.ENGLISH));
+                    out.print("] "); // NOI18N
+                    out.print(entry.getKey().getPath());
+                    out.print(':');
+                    out.print(violation.getLine());
+                    if (violation.getColumn() > 0) {
+                        out.print(':');
+                        out.print(violation.getColumn());
+                    }
+                    out.print(": "); // NOI18N
+                    out.print(violation.getMessage());
+                    if (violation.getSource() != null) {
+                        out.print(" ["); // NOI18N
+                        out.print(getCheckName(violation.getSource()));
+                        out.print(']');
+                    }
+                    out.println();
+                }
+            }
+            for (Map.Entry<File, Throwable> entry : failures.entrySet()) {
+                out.print("[FAILURE] "); // NOI18N
+                out.print(entry.getKey().getPath());
+                out.print(": "); // NOI18N
+                out.println(entry.getValue());
+            }
+            out.flush();
+        }
+
+        private static String getCheckName (String source) {
+            String name = source.substring(source.lastIndexOf('.') + 1);
+            return name.endsWith("Check") ? name.substring(0, name.length() - 5) : name; // NOI18N
+        }
+    }
+}
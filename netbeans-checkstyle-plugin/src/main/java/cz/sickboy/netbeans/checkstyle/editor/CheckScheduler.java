@@ -0,0 +1,207 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle.editor;
+
+import cz.sickboy.netbeans.checkstyle.CancellableChecker;
+import cz.sickboy.netbeans.checkstyle.CheckExecutor;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openide.filesystems.FileObject;
+
+/**
+ * Schedules the editor checks. The requests are coalesced per file, a newer
+ * request supersedes the pending one before it even starts. The check starts
+ * once the file was quiet for about the time the previous check of the same
+ * file took, so large files are not checked back to back.
+ *
+ * @author Petr Hejl
+ */
+public final class CheckScheduler {
+
+    private static final Logger LOGGER = Logger.getLogger(CheckScheduler.class.getName());
+
+    private static final int MIN_DELAY = Integer.getInteger(
+        "cz.sickboy.netbeans.checkstyle.minCheckDelay", 100); // NOI18N
+
+    private static final int MAX_DELAY = Integer.getInteger(
+        "cz.sickboy.netbeans.checkstyle.maxCheckDelay", 2000); // NOI18N
+
+    private static final CheckExecutor WORKERS = CheckExecutor.create(CheckScheduler.class.getName(), 10);
+
+    private static CheckScheduler instance;
+
+    private final int minDelay;
+
+    private final int maxDelay;
+
+    /* GuardedBy("this") */
+    private final Map<FileObject, Request> pending = new HashMap<FileObject, Request>();
+
+    /* GuardedBy("this") */
+    private final Map<FileObject, Long> durations = new WeakHashMap<FileObject, Long>();
+
+    CheckScheduler (int minDelay, int maxDelay) {
+        this.minDelay = minDelay;
+        this.maxDelay = Math.max(minDelay, maxDelay);
+    }
+
+    public static synchronized CheckScheduler getDefault () {
+        if (instance == null) {
+            instance = new CheckScheduler(MIN_DELAY, MAX_DELAY);
+        }
+        return instance;
+    }
+
+    /**
+     * Schedules the check of the file. The pending check of the same file is
+     * dropped, the running one is cancelled.
+     *
+     * @param fileObject the checked file
+     * @param job the check to run
+     * @return the handle of the scheduled check
+     */
+    public synchronized Request schedule (FileObject fileObject, Job job) {
+        Request previous = pending.remove(fileObject);
+        if (previous != null) {
+            previous.cancel();
+        }
+
+        Request request = new Request(fileObject, job);
+        pending.put(fileObject, request);
+        request.task = WORKERS.post(request, getDelay(fileObject));
+        return request;
+    }
+
+    /**
+     * Cancels the pending or running check of the file.
+     *
+     * @param fileObject the checked file
+     */
+    public synchronized void cancel (FileObject fileObject) {
+        Request request = pending.remove(fileObject);
+        if (request != null) {
+            request.cancel();
+        }
+    }
+
+    /**
+     * Returns the delay before the next check of the file starts.
+     *
+     * @param fileObject the checked file
+     * @return the delay in milliseconds
+     */
+    synchronized int getDelay (FileObject fileObject) {
+        Long duration = durations.get(fileObject);
+        if (duration == null) {
+            return minDelay;
+        }
+        return (int) Math.min(maxDelay, Math.max(minDelay, duration));
+    }
+
+    synchronized void setDuration (FileObject fileObject, long duration) {
+        durations.put(fileObject, duration);
+    }
+
+    synchronized boolean isPending (FileObject fileObject) {
+        return pending.containsKey(fileObject);
+    }
+
+    /**
+     * The check run by the scheduler.
+     */
+    public static interface Job {
+
+        /**
+         * Runs the check. The check should stop and drop its results once
+         * the hook says it was cancelled.
+         *
+         * @param hook the hook to consult for the cancellation
+         */
+        void run (CancellableChecker.CancellationHook hook);
+
+    }
+
+    /**
+     * The handle of the single scheduled check.
+     */
+    public final class Request implements Runnable, CancellableChecker.CancellationHook {
+
+        private final FileObject fileObject;
+
+        private final Job job;
+
+        /* GuardedBy("CheckScheduler.this") */
+        private CheckExecutor.Handle task;
+
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        private Request (FileObject fileObject, Job job) {
+            this.fileObject = fileObject;
+            this.job = job;
+        }
+
+        @Override
+        public boolean isCanceled () {
+            return cancelled.get();
+        }
+
+        public void cancel () {
+            // repeated cancels don't contend on the scheduler
+            if (!cancelled.compareAndSet(false, true)) {
+                return;
+            }
+            synchronized (CheckScheduler.this) {
+                if (pending.get(fileObject) == this) {
+                    pending.remove(fileObject);
+                }
+                if (task != null && !task.cancel()) {
+                    LOGGER.log(Level.FINEST, "Cancelling running check of {0}", fileObject);
+                }
+            }
+        }
+
+        @Override
+        public void run () {
+            if (cancelled.get()) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            try {
+                job.run(this);
+            } finally {
+                long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                synchronized (CheckScheduler.this) {
+                    if (pending.get(fileObject) == this) {
+                        pending.remove(fileObject);
+                    }
+                    // the cancelled check says nothing about the time needed
+                    if (!cancelled.get()) {
+                        durations.put(fileObject, duration);
+                    }
+                }
+            }
+        }
+    }
+}
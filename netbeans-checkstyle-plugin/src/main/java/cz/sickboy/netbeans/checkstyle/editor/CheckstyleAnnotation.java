@@ -36,6 +36,8 @@ public final class CheckstyleAnnotation extends Annotation {
 
     private final String shortDescription;
 
+    private final SeverityLevel severity;
+
     public CheckstyleAnnotation (StyledDocument document, Position position,
         String shortDescription, SeverityLevel level)
     {
@@ -43,6 +45,7 @@ public final class CheckstyleAnnotation extends Annotation {
         this.document = document;
         this.position = position;
         this.shortDescription = shortDescription;
+        this.severity = level;
     }
 
     @Override
@@ -63,4 +66,16 @@ public final class CheckstyleAnnotation extends Annotation {
         return shortDescription;
     }
 
+    public StyledDocument getDocument () {
+        return document;
+    }
+
+    public Position getPosition () {
+        return position;
+    }
+
+    public SeverityLevel getSeverity () {
+        return severity;
+    }
+
 }
@@ -18,20 +18,28 @@
  */
 package cz.sickboy.netbeans.checkstyle.editor;
 
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.SwingUtilities;
+import javax.swing.text.StyledDocument;
 import org.openide.cookies.EditorCookie;
 import org.openide.filesystems.FileObject;
 import org.openide.loaders.DataObject;
 import org.openide.loaders.DataObjectNotFoundException;
+import org.openide.text.NbDocument;
 import org.openide.util.RequestProcessor;
 
 /**
@@ -53,6 +61,11 @@ public final class CheckstyleAnnotationContainer {
 
     private final List<CheckstyleAnnotation> annotations = new ArrayList<CheckstyleAnnotation>();
 
+    private final RequestProcessor.Task updateTask = UPDATER.create(new AnnotationUpdater());
+
+    /* GuardedBy("this") */
+    private List<CheckstyleAnnotation> pendingAnnotations;
+
     private CheckstyleAnnotationContainer (FileObject fileObject) {
         this.fileObject = fileObject;
     }
@@ -115,13 +128,17 @@ public final class CheckstyleAnnotationContainer {
     }
 
     /**
-     * Sets the new bunch of annotations to the file object. The old annotations are removed and detached. This method
-     * is <i>thread safe</i>.
+     * Sets the new bunch of annotations to the file object. The old annotations that are not among the new ones are
+     * detached, only the really new annotations are attached. When several updates are pending only the latest one is
+     * applied. This method is <i>thread safe</i>.
      *
      * @param newAnnotations the fresh annotations to attach
      */
-    public synchronized void setAnnotations (List<CheckstyleAnnotation> newAnnotations) {
-        UPDATER.post(new AnnotationUpdater(newAnnotations, annotations));
+    public void setAnnotations (List<CheckstyleAnnotation> newAnnotations) {
+        synchronized (this) {
+            pendingAnnotations = new ArrayList<CheckstyleAnnotation>(newAnnotations);
+        }
+        updateTask.schedule(0);
     }
 
     /**
@@ -133,37 +150,150 @@ public final class CheckstyleAnnotationContainer {
         return Collections.unmodifiableList(annotations);
     }
 
-    private class AnnotationUpdater implements Runnable {
+    /**
+     * Replaces the attached annotations with the new ones. The attached
+     * annotation equal to the new one (by line, message and severity) is kept
+     * attached and the new one is dropped.
+     *
+     * @param attachedAnnotations the currently attached annotations
+     * @param newAnnotations the annotations that should be attached
+     * @return the attached annotations
+     */
+    static List<CheckstyleAnnotation> update (List<CheckstyleAnnotation> attachedAnnotations,
+        List<CheckstyleAnnotation> newAnnotations)
+    {
+        Map<Key, Deque<CheckstyleAnnotation>> attached = new HashMap<Key, Deque<CheckstyleAnnotation>>();
+        List<Key> attachedKeys = createKeys(attachedAnnotations);
+        for (int i = 0; i < attachedAnnotations.size(); i++) {
+            Deque<CheckstyleAnnotation> same = attached.get(attachedKeys.get(i));
+            if (same == null) {
+                same = new ArrayDeque<CheckstyleAnnotation>(1);
+                attached.put(attachedKeys.get(i), same);
+            }
+            same.add(attachedAnnotations.get(i));
+        }
+
+        List<CheckstyleAnnotation> result = new ArrayList<CheckstyleAnnotation>(newAnnotations.size());
+        List<CheckstyleAnnotation> toAttach = new ArrayList<CheckstyleAnnotation>();
+        List<Key> newKeys = createKeys(newAnnotations);
+        for (int i = 0; i < newAnnotations.size(); i++) {
+            Deque<CheckstyleAnnotation> same = attached.get(newKeys.get(i));
+            if (same != null && !same.isEmpty()) {
+                result.add(same.poll());
+            } else {
+                toAttach.add(newAnnotations.get(i));
+            }
+        }
 
-        private final List<CheckstyleAnnotation> annotationsToAdd;
+        int detached = 0;
+        for (Deque<CheckstyleAnnotation> toDetach : attached.values()) {
+            for (CheckstyleAnnotation annotation : toDetach) {
+                annotation.documentDetach();
+                detached++;
+            }
+        }
+        for (CheckstyleAnnotation annotation : toAttach) {
+            annotation.documentAttach();
+            result.add(annotation);
+        }
 
-        private final List<CheckstyleAnnotation> annotationsToRemove;
+        if (LOGGER.isLoggable(Level.FINEST)) {
+            LOGGER.log(Level.FINEST, "Annotations kept: {0}, detached: {1}, attached: {2}",
+                new Object[] {result.size() - toAttach.size(), detached, toAttach.size()});
+        }
+        return result;
+    }
 
-        public AnnotationUpdater (List<CheckstyleAnnotation> annotationsToAdd,
-            List<CheckstyleAnnotation> annotationsToRemove)
-        {
+    private static List<Key> createKeys (final List<CheckstyleAnnotation> annotations) {
+        final Key[] keys = new Key[annotations.size()];
 
-            this.annotationsToAdd = new ArrayList<CheckstyleAnnotation>(annotationsToAdd);
-            this.annotationsToRemove = new ArrayList<CheckstyleAnnotation>(annotationsToRemove);
+        Set<StyledDocument> documents = Collections.newSetFromMap(new IdentityHashMap<StyledDocument, Boolean>());
+        for (CheckstyleAnnotation annotation : annotations) {
+            documents.add(annotation.getDocument());
         }
 
+        // the annotations move with the text, the current line is what matters
+        for (final StyledDocument document : documents) {
+            document.render(new Runnable() {
+
+                @Override
+                public void run () {
+                    for (int i = 0; i < keys.length; i++) {
+                        CheckstyleAnnotation annotation = annotations.get(i);
+                        if (annotation.getDocument() == document) {
+                            int line = NbDocument.findLineNumber(document, annotation.getPosition().getOffset());
+                            keys[i] = new Key(document, line, annotation.getShortDescription(),
+                                annotation.getSeverity());
+                        }
+                    }
+                }
+            });
+        }
+        return Arrays.asList(keys);
+    }
+
+    private class AnnotationUpdater implements Runnable {
+
         @Override
         public void run () {
-            for (CheckstyleAnnotation annotation : annotationsToRemove) {
-                annotation.documentDetach();
+            List<CheckstyleAnnotation> newAnnotations;
+            List<CheckstyleAnnotation> attachedAnnotations;
+            synchronized (CheckstyleAnnotationContainer.this) {
+                newAnnotations = pendingAnnotations;
+                pendingAnnotations = null;
+                if (newAnnotations == null) {
+                    return;
+                }
+                attachedAnnotations = new ArrayList<CheckstyleAnnotation>(annotations);
             }
 
-            List<CheckstyleAnnotation> addedAnnotations =
-                new ArrayList<CheckstyleAnnotation>(annotationsToAdd.size());
-            for (CheckstyleAnnotation annotation : annotationsToAdd) {
-                annotation.documentAttach();
-                addedAnnotations.add(annotation);
-            }
+            List<CheckstyleAnnotation> updatedAnnotations = update(attachedAnnotations, newAnnotations);
 
             synchronized (CheckstyleAnnotationContainer.this) {
                 annotations.clear();
-                annotations.addAll(addedAnnotations);
+                annotations.addAll(updatedAnnotations);
+            }
+        }
+    }
+
+    private static final class Key {
+
+        private final StyledDocument document;
+
+        private final int line;
+
+        private final String message;
+
+        private final SeverityLevel severity;
+
+        public Key (StyledDocument document, int line, String message, SeverityLevel severity) {
+            this.document = document;
+            this.line = line;
+            this.message = message;
+            this.severity = severity;
+        }
+
+        @Override
+        public boolean equals (Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
             }
+            Key other = (Key) obj;
+            return document == other.document && line == other.line && severity == other.severity
+                && (message == null ? other.message == null : message.equals(other.message));
+        }
+
+        @Override
+        public int hashCode () {
+            int hash = 7;
+            hash = 41 * hash + System.identityHashCode(document);
+            hash = 41 * hash + line;
+            hash = 41 * hash + (message != null ? message.hashCode() : 0);
+            hash = 41 * hash + (severity != null ? severity.hashCode() : 0);
+            return hash;
         }
     }
 
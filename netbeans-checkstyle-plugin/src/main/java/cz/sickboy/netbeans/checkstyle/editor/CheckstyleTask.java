@@ -18,28 +18,34 @@
  */
 package cz.sickboy.netbeans.checkstyle.editor;
 
-import com.puppycrawl.tools.checkstyle.api.AuditEvent;
 import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+import com.sun.source.tree.ErroneousTree;
+import com.sun.source.util.TreeScanner;
 import cz.sickboy.netbeans.checkstyle.CancellableChecker;
-import cz.sickboy.netbeans.checkstyle.CheckstyleListener;
+import cz.sickboy.netbeans.checkstyle.CheckerPool;
+import cz.sickboy.netbeans.checkstyle.CheckstyleViolation;
 import cz.sickboy.netbeans.checkstyle.Configuration;
 import cz.sickboy.netbeans.checkstyle.ConfigurationLoader;
+import cz.sickboy.netbeans.checkstyle.ResultCache;
 import cz.sickboy.netbeans.checkstyle.Severity;
+import cz.sickboy.netbeans.checkstyle.SourceText;
 import cz.sickboy.netbeans.checkstyle.error.ErrorHandler;
 import java.io.File;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.CancellationException;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
 import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
 import javax.swing.text.Position;
 import javax.swing.text.StyledDocument;
+import javax.tools.Diagnostic;
 import org.netbeans.api.java.source.CancellableTask;
 import org.netbeans.api.java.source.CompilationInfo;
 import org.openide.cookies.EditorCookie;
@@ -47,147 +53,372 @@ import org.openide.filesystems.FileObject;
 import org.openide.filesystems.FileUtil;
 import org.openide.loaders.DataObject;
 import org.openide.text.NbDocument;
-import org.openide.util.RequestProcessor;
+import org.openide.util.NbBundle;
 
 /**
  *
  * @author Petr Hejl
  */
-public class CheckstyleTask implements CancellableTask<CompilationInfo>, CancellableChecker.CancellationHook {
+public class CheckstyleTask implements CancellableTask<CompilationInfo> {
 
     private static final Logger LOGGER = Logger.getLogger(CheckstyleTask.class.getName());
 
-    private static final RequestProcessor THREAD_POOL = new RequestProcessor(CheckstyleTask.class.getName(), 10, true);
+    /**
+     * Whether the documents modified in the editor are checked as well.
+     */
+    private static final boolean CHECK_MODIFIED = Boolean.parseBoolean(
+        System.getProperty("cz.sickboy.netbeans.checkstyle.checkModified", "true")); // NOI18N
+
+    /**
+     * Whether the check runs directly in the parsing infrastructure thread
+     * instead of being scheduled by the {@link CheckScheduler}. The direct
+     * check is not delayed but it holds the infrastructure thread until done.
+     */
+    private static final boolean DIRECT_CHECK = Boolean.getBoolean(
+        "cz.sickboy.netbeans.checkstyle.directCheck"); // NOI18N
+
+    /**
+     * The maximal number of annotations of the file, the problems above the
+     * limit are summarized by a single annotation.
+     */
+    private static final int MAX_ANNOTATIONS = Integer.getInteger(
+        "cz.sickboy.netbeans.checkstyle.maxAnnotations", 500); // NOI18N
+
+    /**
+     * Whether all the problems of a line are listed by a single annotation.
+     */
+    private static final boolean AGGREGATE_ANNOTATIONS = Boolean.getBoolean(
+        "cz.sickboy.netbeans.checkstyle.aggregateAnnotations"); // NOI18N
+
+    /**
+     * Prefixes of the javac diagnostic codes reported by the parser.
+     */
+    private static final String[] SYNTAX_ERRORS = {
+        "compiler.err.expected", // NOI18N
+        "compiler.err.premature.eof", // NOI18N
+        "compiler.err.illegal.start.of.", // NOI18N
+        "compiler.err.illegal.char", // NOI18N
+        "compiler.err.unclosed.", // NOI18N
+        "compiler.err.not.stmt", // NOI18N
+        "compiler.err.orphaned", // NOI18N
+        "compiler.err.else.without.if", // NOI18N
+    };
+
+    /**
+     * Distinguishes the cached results of the modified snapshots.
+     */
+    private static final String MODIFIED_SUFFIX = "-modified"; // NOI18N
 
     private final FileObject fileObject;
 
-    private Future<?> running;
+    /**
+     * Incremented by every cancel, a run is stale once the generation it
+     * started with is not the current one.
+     */
+    private final AtomicLong generation = new AtomicLong();
 
-    private boolean cancelled;
+    private final AtomicReference<CheckScheduler.Request> running = new AtomicReference<CheckScheduler.Request>();
+
+    private volatile long runGeneration;
 
     public CheckstyleTask (FileObject fileObject) {
         this.fileObject = fileObject;
     }
 
     @Override
-    public synchronized void cancel () {
-        if (running != null) {
-            running.cancel(true);
+    public void cancel () {
+        generation.incrementAndGet();
+        CheckScheduler.Request request = running.getAndSet(null);
+        if (request != null) {
+            request.cancel();
         }
-        cancelled = true;
     }
 
     @Override
     public void run (CompilationInfo info) throws Exception {
-        init();
+        long current = init();
 
         DataObject data = DataObject.find(fileObject);
-        if (data == null || data.isModified()) {
+        if (data == null || (!CHECK_MODIFIED && data.isModified())) {
             return;
         }
 
-        EditorCookie editor = DataObject.find(fileObject).getCookie(EditorCookie.class);
+        EditorCookie editor = data.getCookie(EditorCookie.class);
         if (editor == null) {
             return;
         }
 
         try {
-            Configuration config = ConfigurationLoader.getDefault().getConfiguration();
+            Configuration config = ConfigurationLoader.getDefault().getConfiguration(fileObject);
 
             final File file = FileUtil.toFile(fileObject);
             if (file == null) { // occurs for libraries for example
                 return;
             }
 
-            Pattern ignored = config.getIgnoredPathsPattern();
-            if (ignored != null && ignored.matcher(file.getAbsolutePath()).matches()) {
+            if (!config.isChecked(file)) {
+                return;
+            }
+
+            // checkstyle would fail to parse it as well, keep the previous results
+            if (hasSyntaxErrors(info)) {
                 return;
             }
 
-            Pattern checked = config.getCheckedPathsPattern();
-            if (checked != null && !checked.matcher(file.getAbsolutePath()).matches()) {
+            // the snapshot the infrastructure parsed is checked, no need to read the file
+            SourceText source = SourceText.create(file, info.getText());
+            StyledDocument document = editor.openDocument();
+
+            CheckScheduler scheduler = CheckScheduler.getDefault();
+            List<CheckstyleViolation> violations = ResultCache.getDefault().get(file,
+                getCacheHash(source, !data.isModified()), config);
+            if (violations != null) {
+                // known results supersede any check still pending
+                scheduler.cancel(fileObject);
+                setAnnotations(fileObject, createAnnotations(document, violations, config.getSeverity()));
                 return;
             }
 
-            List<CheckstyleAnnotation> results = run(fileObject, file, editor.openDocument(), config);
-            if (!isCanceled()) {
-                setAnnotations(fileObject, results);
+            if (isCanceled(current)) {
+                return;
+            }
+            if (DIRECT_CHECK) {
+                scheduler.cancel(fileObject);
+                checkDirectly(current, source, document, config, !data.isModified());
+                return;
+            }
+            CheckScheduler.Request request = scheduler.schedule(fileObject, new Check(source, document, config, !data.isModified()));
+            running.set(request);
+            // cancelled meanwhile, the cancel might have missed the request
+            if (isCanceled(current) && running.compareAndSet(request, null)) {
+                request.cancel();
             }
         } catch (CheckstyleException ex) {
             ErrorHandler.getDefault().handleError(fileObject, LOGGER, ex);
         }
     }
 
-    synchronized void init () {
-        running = null;
-        cancelled = false;
+    /**
+     * Starts a new run.
+     *
+     * @return the generation of the run
+     */
+    long init () {
+        running.set(null);
+        long current = generation.get();
+        runGeneration = current;
+        return current;
     }
 
-    @Override
-    public synchronized boolean isCanceled () {
-        return cancelled;
+    /**
+     * Returns whether the current run has been cancelled.
+     *
+     * @return <code>true</code> if the current run has been cancelled
+     */
+    public boolean isCanceled () {
+        return isCanceled(runGeneration);
+    }
+
+    private boolean isCanceled (long started) {
+        return generation.get() != started;
+    }
+
+    /**
+     * Checks the source and annotates the document on the current thread
+     * instead of scheduling the check.
+     *
+     * @param started the generation of the run
+     * @param source the checked snapshot
+     * @param document the annotated document
+     * @param config the configuration used for checking
+     * @param saved whether the snapshot is the saved content of the file
+     */
+    void checkDirectly (long started, SourceText source, StyledDocument document,
+        Configuration config, boolean saved)
+    {
+        new Check(source, document, config, saved).run(new DirectHook(started));
+    }
+
+    /**
+     * Returns the hash the results of the snapshot are cached with. The
+     * results of the modified snapshot are incomplete, they lack the problems
+     * of the checks reading the saved file, so they are kept apart from the
+     * results of the same saved content.
+     *
+     * @param source the checked snapshot
+     * @param saved whether the snapshot is the saved content of the file
+     * @return the hash of the cached results
+     */
+    static String getCacheHash (SourceText source, boolean saved) {
+        return saved ? source.getHash() : source.getHash() + MODIFIED_SUFFIX;
     }
 
-    private List<CheckstyleAnnotation> run (final FileObject fileObject, final File file,
-        final StyledDocument document, final Configuration config) throws CheckstyleException
+    /**
+     * Checks the source on the current thread.
+     *
+     * @return all the problems or <code>null</code> if the check has been cancelled
+     */
+    private List<CheckstyleViolation> check (SourceText source, Configuration config,
+        CancellableChecker.CancellationHook hook) throws CheckstyleException
     {
+        CheckstyleViolation.Collector listener = new CheckstyleViolation.Collector();
+
+        ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(config.getCheckstyleClassLoader());
+            CheckerPool pool = CheckerPool.getDefault();
+            CancellableChecker checker = pool.acquireChecker(fileObject, config, hook);
+            try {
+                checker.addListener(listener);
+                try {
+                    checker.process(source.getFile(), source.getFileText());
+                } finally {
+                    checker.removeListener(listener);
+                }
+            } finally {
+                pool.releaseChecker(checker);
+            }
+        } finally {
+            Thread.currentThread().setContextClassLoader(originalClassLoader);
+        }
 
-        final CollectingListener listener = new CollectingListener(config.getSeverity(),
-            document);
+        // the results of the cancelled check are incomplete
+        if (hook.isCanceled()) {
+            return null;
+        }
+        return listener.getResults();
+    }
 
-        Future<?> future;
-        synchronized (this) {
-            if (isCanceled()) {
-                return Collections.emptyList();
+    /**
+     * Returns the problems of the checked text, without the problems of the
+     * checks reading the saved file. Those are stale for the modified document.
+     *
+     * @param violations all the problems
+     * @return the problems of the checked text
+     */
+    static List<CheckstyleViolation> getTextViolations (List<CheckstyleViolation> violations) {
+        List<CheckstyleViolation> result = new ArrayList<CheckstyleViolation>(violations.size());
+        for (CheckstyleViolation violation : violations) {
+            if (!CancellableChecker.isReadFromDisk(violation)) {
+                result.add(violation);
             }
+        }
+        return result;
+    }
+
+    /**
+     * Creates the annotations of the problems. All the positions are created
+     * in a single pass under the document lock using the line index of the
+     * document.
+     *
+     * @param document the annotated document
+     * @param violations all the problems of the file
+     * @param minimalSeverity the minimal severity of the annotated problems
+     * @return the annotations of the problems
+     */
+    static List<CheckstyleAnnotation> createAnnotations (StyledDocument document,
+        List<CheckstyleViolation> violations, Severity minimalSeverity)
+    {
+        return createAnnotations(document, violations, minimalSeverity, MAX_ANNOTATIONS, AGGREGATE_ANNOTATIONS);
+    }
+
+    /**
+     * Creates at most <code>maxAnnotations</code> annotations of the problems
+     * plus the one summarizing the problems above the limit.
+     *
+     * @param document the annotated document
+     * @param violations all the problems of the file
+     * @param minimalSeverity the minimal severity of the annotated problems
+     * @param maxAnnotations the maximal number of the annotations
+     * @param aggregate whether the problems of the line share a single annotation
+     * @return the annotations of the problems
+     */
+    static List<CheckstyleAnnotation> createAnnotations (final StyledDocument document,
+        final List<CheckstyleViolation> violations, final Severity minimalSeverity,
+        final int maxAnnotations, final boolean aggregate)
+    {
+        final List<CheckstyleAnnotation> annotations = new ArrayList<CheckstyleAnnotation>(
+            Math.min(violations.size(), maxAnnotations) + 1);
+        document.render(new Runnable() {
+
+            @Override
+            public void run () {
+                Element lines = NbDocument.findLineRootElement(document);
+                int length = document.getLength();
+                Map<Integer, Position> positions = new HashMap<Integer, Position>();
+                Map<Integer, LineProblems> aggregated = new LinkedHashMap<Integer, LineProblems>();
+
+                int overflow = 0;
+                Position overflowPosition = null;
+                SeverityLevel overflowSeverity = null;
+
+                for (CheckstyleViolation violation : violations) {
+                    if (!minimalSeverity.include(violation.getSeverity())) {
+                        continue;
+                    }
+
+                    int line = violation.getLine() - 1;
+                    if (line < 0 || line >= lines.getElementCount()) {
+                        continue;
+                    }
+
+                    LineProblems problems = aggregated.get(line);
+                    if (problems != null) {
+                        problems.add(violation);
+                        continue;
+                    }
 
-            running = THREAD_POOL.submit(new Callable<Void>() {
+                    int count = aggregate ? aggregated.size() : annotations.size();
+                    if (count >= maxAnnotations && overflowPosition != null) {
+                        overflow++;
+                        overflowSeverity = max(overflowSeverity, violation.getSeverity());
+                        continue;
+                    }
 
-                @Override
-                public Void call () throws Exception {
-                    ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
-                    try {
-                        Thread.currentThread().setContextClassLoader(config.getCheckstyleClassLoader());
-                        CancellableChecker checker = new CancellableChecker(CheckstyleTask.this);
+                    Position position = positions.get(line);
+                    if (position == null) {
+                        int offset = lines.getElement(line).getStartOffset();
+                        if (offset >= length) {
+                            continue;
+                        }
                         try {
-                            // classloader to load checks
-                            checker.setModuleClassLoader(config.getCheckstyleClassLoader());
-                            // classloader to load classpath
-                            checker.configure(config.getCheckstyleConfiguration());
-                            checker.addListener(listener);
-
-                            checker.process(file);
-                        } finally {
-                            checker.destroy();
+                            position = document.createPosition(offset);
+                        } catch (BadLocationException ex) {
+                            LOGGER.log(Level.INFO, null, ex);
+                            continue;
                         }
+                        positions.put(line, position);
+                    }
 
-                        return null;
-                    } finally {
-                        Thread.currentThread().setContextClassLoader(originalClassLoader);
+                    if (count >= maxAnnotations) {
+                        // the summary is placed on the first problem not shown
+                        overflow++;
+                        overflowPosition = position;
+                        overflowSeverity = violation.getSeverity();
+                    } else if (aggregate) {
+                        aggregated.put(line, new LineProblems(position, violation));
+                    } else {
+                        annotations.add(new CheckstyleAnnotation(document, position,
+                            violation.getMessage(), violation.getSeverity()));
                     }
                 }
-            });
-            future = running;
-        }
-        try {
-            future.get();
-        } catch (ExecutionException ex) {
-            Throwable cause = ex.getCause();
-            if (cause instanceof CheckstyleException) {
-                throw (CheckstyleException) cause;
-            } else {
-                throw new RuntimeException(cause);
+
+                for (LineProblems problems : aggregated.values()) {
+                    annotations.add(new CheckstyleAnnotation(document, problems.position,
+                        problems.messages.toString(), problems.severity));
+                }
+                if (overflow > 0) {
+                    annotations.add(new CheckstyleAnnotation(document, overflowPosition,
+                        NbBundle.getMessage(CheckstyleTask.class, "CheckstyleTask.overflow", overflow), // NOI18N
+                        overflowSeverity));
+                }
             }
-        } catch (InterruptedException ex) {
-            LOGGER.log(Level.FINE, null, ex);
-            Thread.currentThread().interrupt();
-            return Collections.emptyList();
-        } catch (CancellationException ex) {
-            // XXX is there a better way than catching runtime exception
-            return Collections.emptyList();
-        }
+        });
+        return annotations;
+    }
 
-        return listener.getResults();
+    private static SeverityLevel max (SeverityLevel first, SeverityLevel second) {
+        return first.compareTo(second) >= 0 ? first : second;
     }
 
     private static void setAnnotations (FileObject fileObject, List<CheckstyleAnnotation> annotations) {
@@ -199,45 +430,131 @@ public class CheckstyleTask implements CancellableTask<CompilationInfo>, Cancell
         }
     }
 
-    private static Position getPosition (final StyledDocument document, final int lineNumber) {
-        final AtomicReference<Position> ref = new AtomicReference<>();
-        document.render(new Runnable() {
+    /**
+     * Returns whether the javac parser found any syntax error in the file.
+     *
+     * @param info the parsed file
+     * @return <code>true</code> if the file can't be parsed cleanly
+     */
+    private static boolean hasSyntaxErrors (CompilationInfo info) {
+        for (Diagnostic<?> diagnostic : info.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR && isSyntaxError(diagnostic.getCode())) {
+                return true;
+            }
+        }
+
+        Boolean erroneous = new TreeScanner<Boolean, Void>() {
 
             @Override
-            public void run () {
-                int offset = NbDocument.findLineOffset(document, lineNumber);
-                if (offset < 0 || offset >= document.getLength()) {
-                    return;
-                }
+            public Boolean visitErroneous (ErroneousTree node, Void p) {
+                return Boolean.TRUE;
+            }
 
-                try {
-                    ref.set(document.createPosition(offset - NbDocument.findLineColumn(document, offset)));
-                } catch (BadLocationException ex) {
-                    LOGGER.log(Level.INFO, null, ex);
-                }
+            @Override
+            public Boolean reduce (Boolean r1, Boolean r2) {
+                return Boolean.TRUE.equals(r1) || Boolean.TRUE.equals(r2);
             }
-        });
+        }.scan(info.getCompilationUnit(), null);
+        return Boolean.TRUE.equals(erroneous);
+    }
 
-        return ref.get();
+    private static boolean isSyntaxError (String code) {
+        if (code == null) {
+            return false;
+        }
+        for (String prefix : SYNTAX_ERRORS) {
+            if (code.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private static class CollectingListener extends CheckstyleListener<CheckstyleAnnotation> {
+    /**
+     * The check of the source snapshot run by the {@link CheckScheduler}.
+     */
+    private class Check implements CheckScheduler.Job {
+
+        private final SourceText source;
 
         private final StyledDocument document;
 
-        public CollectingListener (Severity minimalSeverity, StyledDocument document) {
-            super(minimalSeverity);
+        private final Configuration config;
+
+        /**
+         * Whether the checked snapshot is the saved content of the file.
+         */
+        private final boolean saved;
+
+        public Check (SourceText source, StyledDocument document, Configuration config, boolean saved) {
+            this.source = source;
             this.document = document;
+            this.config = config;
+            this.saved = saved;
         }
 
         @Override
-        public CheckstyleAnnotation createResult (AuditEvent evt) {
-            Position position = getPosition(document, evt.getLine() - 1);
-            if (position != null) {
-                return new CheckstyleAnnotation(document, position,
-                    evt.getMessage(), evt.getSeverityLevel());
+        public void run (CancellableChecker.CancellationHook hook) {
+            try {
+                List<CheckstyleViolation> violations = check(source, config, hook);
+                if (violations == null) {
+                    return;
+                }
+                if (!saved) {
+                    violations = getTextViolations(violations);
+                }
+                // the unsaved buffer is likely to change again, no need to hit the disk
+                violations = ResultCache.getDefault().put(source.getFile(), getCacheHash(source, saved), config,
+                    violations, saved);
+
+                List<CheckstyleAnnotation> annotations = createAnnotations(document, violations, config.getSeverity());
+                if (!hook.isCanceled()) {
+                    setAnnotations(fileObject, annotations);
+                }
+            } catch (CheckstyleException ex) {
+                ErrorHandler.getDefault().handleError(fileObject, LOGGER, ex);
             }
-            return null;
+        }
+    }
+
+    /**
+     * All the problems of a single line shown by one annotation.
+     */
+    private static final class LineProblems {
+
+        private final Position position;
+
+        private final StringBuilder messages;
+
+        private SeverityLevel severity;
+
+        public LineProblems (Position position, CheckstyleViolation violation) {
+            this.position = position;
+            this.messages = new StringBuilder(violation.getMessage());
+            this.severity = violation.getSeverity();
+        }
+
+        public void add (CheckstyleViolation violation) {
+            messages.append('\n').append(violation.getMessage());
+            severity = max(severity, violation.getSeverity());
+        }
+    }
+
+    /**
+     * Cancellation of the check running in the infrastructure thread. The
+     * check stops on {@link #cancel()} or when the thread is interrupted.
+     */
+    private class DirectHook implements CancellableChecker.CancellationHook {
+
+        private final long started;
+
+        public DirectHook (long started) {
+            this.started = started;
+        }
+
+        @Override
+        public boolean isCanceled () {
+            return CheckstyleTask.this.isCanceled(started) || Thread.currentThread().isInterrupted();
         }
     }
 }
@@ -18,12 +18,16 @@
  */
 package cz.sickboy.netbeans.checkstyle.editor;
 
+import cz.sickboy.netbeans.checkstyle.ConfigurationLoader;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import org.netbeans.api.java.source.CancellableTask;
 import org.netbeans.api.java.source.CompilationInfo;
 import org.netbeans.api.java.source.JavaSource.Phase;
 import org.netbeans.api.java.source.JavaSource.Priority;
 import org.netbeans.api.java.source.support.EditorAwareJavaSourceTaskFactory;
 import org.openide.filesystems.FileObject;
+import org.openide.util.WeakListeners;
 
 /**
  *
@@ -31,8 +35,23 @@ import org.openide.filesystems.FileObject;
  */
 public class CheckstyleTaskFactory extends EditorAwareJavaSourceTaskFactory {
 
+    private final ChangeListener configurationListener = new ChangeListener() {
+
+        @Override
+        public void stateChanged (ChangeEvent e) {
+            // only the files opened in the editor are annotated
+            for (FileObject file : getFileObjects()) {
+                reschedule(file);
+            }
+        }
+    };
+
+    /* GuardedBy("this") */
+    private ConfigurationLoader listenedLoader;
+
     public CheckstyleTaskFactory () {
-        super(Phase.UP_TO_DATE, Priority.LOW);
+        // checkstyle needs just the parsed snapshot, not the attributed one
+        super(Phase.PARSED, Priority.LOW);
     }
 
     /**
@@ -40,7 +59,21 @@ public class CheckstyleTaskFactory extends EditorAwareJavaSourceTaskFactory {
      */
     @Override
     protected CancellableTask<CompilationInfo> createTask (FileObject file) {
+        listenConfiguration();
         return new CheckstyleTask(file);
     }
 
+    /**
+     * Starts listening on the configuration once the first file is opened
+     * so that the configuration is not loaded on the module startup. The
+     * listener is moved over when the loader has been reset in between.
+     */
+    private synchronized void listenConfiguration () {
+        ConfigurationLoader loader = ConfigurationLoader.getDefault();
+        if (loader != listenedLoader) {
+            loader.addChangeListener(WeakListeners.change(configurationListener, loader));
+            listenedLoader = loader;
+        }
+    }
+
 }
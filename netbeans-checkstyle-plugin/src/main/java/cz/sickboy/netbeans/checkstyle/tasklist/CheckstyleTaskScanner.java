@@ -18,23 +18,29 @@
  */
 package cz.sickboy.netbeans.checkstyle.tasklist;
 
-import com.puppycrawl.tools.checkstyle.Checker;
-import com.puppycrawl.tools.checkstyle.api.AuditEvent;
 import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import cz.sickboy.netbeans.checkstyle.CancellableChecker;
+import cz.sickboy.netbeans.checkstyle.CheckExecutor;
 import cz.sickboy.netbeans.checkstyle.CheckerCache;
-import cz.sickboy.netbeans.checkstyle.CheckstyleListener;
-import cz.sickboy.netbeans.checkstyle.CheckstyleSettings;
+import cz.sickboy.netbeans.checkstyle.CheckstyleViolation;
+import cz.sickboy.netbeans.checkstyle.CompactViolationList;
 import cz.sickboy.netbeans.checkstyle.Configuration;
 import cz.sickboy.netbeans.checkstyle.ConfigurationLoader;
+import cz.sickboy.netbeans.checkstyle.ResultCache;
 import cz.sickboy.netbeans.checkstyle.Severity;
+import cz.sickboy.netbeans.checkstyle.SourceText;
 import cz.sickboy.netbeans.checkstyle.error.ErrorHandler;
-import java.beans.PropertyChangeEvent;
-import java.beans.PropertyChangeListener;
 import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import org.netbeans.spi.tasklist.FileTaskScanner;
 import org.netbeans.spi.tasklist.Task;
 import org.openide.filesystems.FileObject;
@@ -45,12 +51,59 @@ import org.openide.util.NbBundle;
  *
  * @author Petr Hejl
  */
-public class CheckstyleTaskScanner extends FileTaskScanner implements PropertyChangeListener {
+public class CheckstyleTaskScanner extends FileTaskScanner implements ChangeListener {
 
     private static final Logger LOGGER = Logger.getLogger(CheckstyleTaskScanner.class.getName());
 
+    /**
+     * The number of the threads checking the files in the background. By
+     * default the files are checked synchronously in {@link #scan(FileObject)}
+     * as the task list expects, the background scan answers with an empty
+     * list first and refreshes the file once done.
+     */
+    private static final int SCAN_THREADS = Integer.getInteger(
+        "cz.sickboy.netbeans.checkstyle.scanThreads", 1); // NOI18N
+
+    /**
+     * The maximal number of the tasks shown for a single file.
+     */
+    private static final int MAX_TASKS = Integer.getInteger(
+        "cz.sickboy.netbeans.checkstyle.maxTasksPerFile", 1000); // NOI18N
+
+    /**
+     * The number of the problems after which the tasks found so far are
+     * shown while the file is still being checked, <code>0</code> to show
+     * the tasks once the file is done. Applies only to the background scan
+     * enabled by {@link #SCAN_THREADS} greater than one, the synchronous
+     * scan has no way to show anything before it returns. The problems come
+     * from checkstyle once per file set check, so the tasks of all the
+     * checks run by the tree walker show up together.
+     */
+    private static final int CHUNK_SIZE = Integer.getInteger(
+        "cz.sickboy.netbeans.checkstyle.taskChunkSize", 200); // NOI18N
+
+    private static final CheckExecutor WORKERS = CheckExecutor.create(
+        CheckstyleTaskScanner.class.getName(), SCAN_THREADS);
+
+    /**
+     * The maximal number of the files remembered by the scan index.
+     */
+    private static final int MAX_INDEXED_FILES = Integer.getInteger(
+        "cz.sickboy.netbeans.checkstyle.scanIndexSize", 50000); // NOI18N
+
     private final CheckerCache checkerCache = new CheckerCache();
 
+    private final ScanIndex index = new ScanIndex(MAX_INDEXED_FILES);
+
+    /* GuardedBy("this") */
+    private final Map<FileObject, Scan> pending = new HashMap<FileObject, Scan>();
+
+    /* GuardedBy("this") */
+    private final Map<FileObject, List<? extends Task>> finished = new HashMap<FileObject, List<? extends Task>>();
+
+    /* GuardedBy("this") */
+    private final Map<FileObject, List<? extends Task>> partial = new HashMap<FileObject, List<? extends Task>>();
+
     private Callback callback;
 
     /**
@@ -69,64 +122,170 @@ public class CheckstyleTaskScanner extends FileTaskScanner implements PropertyCh
         }
 
         if (this.callback == null && callback != null) {
-            CheckstyleSettings.getDefault().addPropertyChangeListener(this);
+            ConfigurationLoader.getDefault().addChangeListener(this);
         } else if (this.callback != null && callback == null) {
-            CheckstyleSettings.getDefault().removePropertyChangeListener(this);
+            ConfigurationLoader.getDefault().removeChangeListener(this);
+            cancelPending();
+            index.clear();
         }
 
         this.callback = callback;
     }
 
+    /**
+     * Scans the file for the checkstyle problems. When more than one scanning
+     * thread is configured the file is checked in the background and the task
+     * list is asked to refresh the file once the results are available.
+     *
+     * @param fileObject the file to scan
+     * @return the tasks for the file or an empty list while the file is being checked
+     */
     @Override
     public List<? extends Task> scan (FileObject fileObject) {
         if (fileObject == null || !"java".equalsIgnoreCase(fileObject.getExt())) { // NOI18N
             return null;
         }
 
+        if (SCAN_THREADS <= 1) {
+            return scanFile(fileObject, null);
+        }
+
+        synchronized (this) {
+            if (callback != null) {
+                List<? extends Task> result = finished.remove(fileObject);
+                if (result != null) {
+                    return result;
+                }
+
+                // the running scan shows the tasks found so far
+                result = partial.get(fileObject);
+                if (result != null && pending.containsKey(fileObject)) {
+                    return result;
+                }
+
+                Scan previous = pending.remove(fileObject);
+                if (previous != null) {
+                    previous.cancel();
+                }
+                Scan scan = new Scan(fileObject);
+                pending.put(fileObject, scan);
+                scan.post();
+                return Collections.emptyList();
+            }
+        }
+        return scanFile(fileObject, null);
+    }
+
+    private List<? extends Task> scanFile (FileObject fileObject, Scan scan) {
         try {
-            Configuration config = ConfigurationLoader.getDefault().getConfiguration();
+            Configuration config = ConfigurationLoader.getDefault().getConfiguration(fileObject);
 
             File file = FileUtil.toFile(fileObject);
             if (file == null) { // occurs for libraries for example
                 return null;
             }
 
-            Pattern ignored = config.getIgnoredPathsPattern();
-            if (ignored != null && ignored.matcher(file.getAbsolutePath()).matches()) {
+            index.use(config, fileObject, file);
+            if (!config.isChecked(file)) {
                 return Collections.emptyList();
             }
 
-            Pattern checked = config.getCheckedPathsPattern();
-            if (checked != null && !checked.matcher(file.getAbsolutePath()).matches()) {
-                return Collections.emptyList();
+            ResultCache cache = ResultCache.getDefault();
+            List<CheckstyleViolation> violations = null;
+            // the unchanged file is not even read
+            String contentHash = index.getContentHash(file, config);
+            if (contentHash != null) {
+                violations = cache.get(file, contentHash, config);
+            }
+
+            int overflow = 0;
+            if (violations == null) {
+                long modified = file.lastModified();
+                long size = file.length();
+                // read and decoded just once for both the hash and the check
+                SourceText source = SourceText.create(file, fileObject.asText());
+                violations = cache.get(file, source.getHash(), config);
+                if (violations == null) {
+                    TaskCollector listener = new TaskCollector(fileObject, config.getSeverity(), scan);
+                    check(fileObject, source, config, listener);
+                    violations = listener.getResults();
+                    overflow = listener.getOverflowCount();
+                    // the truncated results are no good for the editor
+                    if (overflow == 0) {
+                        violations = cache.put(file, source.getHash(), config, violations);
+                    }
+                }
+                if (overflow == 0) {
+                    index.put(file, modified, size, config, source.getHash());
+                }
             }
 
-            CollectingListener listener = new CollectingListener(
-                config.getSeverity(), fileObject);
+            return createTasks(fileObject, violations, config.getSeverity(), overflow);
+        } catch (CheckstyleException ex) {
+            ErrorHandler.getDefault().handleError(fileObject, LOGGER, ex);
+            return Collections.emptyList();
+        } catch (IOException ex) {
+            LOGGER.log(Level.INFO, null, ex);
+            return Collections.emptyList();
+        }
+    }
 
-            ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+    private void check (FileObject fileObject, SourceText source, Configuration config,
+        CheckstyleViolation.Collector listener) throws CheckstyleException
+    {
+        ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(config.getCheckstyleClassLoader());
+            CancellableChecker checker = checkerCache.acquireChecker(fileObject, config);
             try {
-                Thread.currentThread().setContextClassLoader(config.getCheckstyleClassLoader());
-                Checker checker = checkerCache.acquireChecker(fileObject, config);
                 try {
-                    try {
-                        checker.addListener(listener);
-                        checker.process(Collections.singletonList(file));
-                    } finally {
-                        checker.removeListener(listener);
-                    }
+                    checker.addListener(listener);
+                    checker.process(source.getFile(), source.getFileText());
                 } finally {
-                    checkerCache.releaseChecker(checker);
+                    checker.removeListener(listener);
                 }
             } finally {
-                Thread.currentThread().setContextClassLoader(originalClassLoader);
+                checkerCache.releaseChecker(checker);
             }
+        } finally {
+            Thread.currentThread().setContextClassLoader(originalClassLoader);
+        }
+    }
 
-            return listener.getResults();
-        } catch (CheckstyleException ex) {
-            ErrorHandler.getDefault().handleError(fileObject, LOGGER, ex);
-            return Collections.emptyList();
+    static List<Task> createTasks (FileObject fileObject, List<CheckstyleViolation> violations,
+        Severity minimalSeverity)
+    {
+        return createTasks(fileObject, violations, minimalSeverity, 0);
+    }
+
+    /**
+     * Creates the tasks of the problems. At most {@link #MAX_TASKS} tasks are
+     * created, the remaining problems are summarized by a single task. The
+     * tasks are created lazily once the task list asks for them.
+     *
+     * @param fileObject the file of the problems
+     * @param violations the problems of the file
+     * @param minimalSeverity the minimal severity of the shown problems
+     * @param overflow the number of the problems already dropped
+     * @return the tasks of the problems
+     */
+    static List<Task> createTasks (FileObject fileObject, List<CheckstyleViolation> violations,
+        Severity minimalSeverity, int overflow)
+    {
+        CompactViolationList compact = CompactViolationList.create(violations);
+        int[] indices = new int[Math.min(compact.size(), MAX_TASKS)];
+        int count = 0;
+        int dropped = overflow;
+        for (int i = 0; i < compact.size(); i++) {
+            if (minimalSeverity.include(compact.getSeverity(i))) {
+                if (count < MAX_TASKS) {
+                    indices[count++] = i;
+                } else {
+                    dropped++;
+                }
+            }
         }
+        return new TaskList(fileObject, compact, Arrays.copyOf(indices, count), dropped);
     }
 
     @Override
@@ -134,29 +293,158 @@ public class CheckstyleTaskScanner extends FileTaskScanner implements PropertyCh
         checkerCache.clear();
     }
 
+    /**
+     * Rescans all the files once the configuration was changed either by
+     * the settings or on disk. Nothing is rescanned when all the scanned
+     * files would get the same tasks. The unchanged files checked with
+     * the equivalent configuration are not read again by the rescan.
+     *
+     * @param evt the change event
+     */
     @Override
-    public synchronized void propertyChange (PropertyChangeEvent evt) {
-        if (callback != null) {
-            callback.refreshAll();
+    public void stateChanged (ChangeEvent evt) {
+        if (!index.isAffected()) {
+            LOGGER.log(Level.FINE, "Configuration change does not affect the tasks"); // NOI18N
+            return;
+        }
+
+        synchronized (this) {
+            cancelPending();
+            if (callback != null) {
+                callback.refreshAll();
+            }
         }
     }
 
+    private synchronized void cancelPending () {
+        for (Scan scan : pending.values()) {
+            scan.cancel();
+        }
+        pending.clear();
+        finished.clear();
+        partial.clear();
+    }
+
     /**
-     * Listener that aggregates checkstyle results for a file..
+     * Background check of a single file. The results are published through
+     * the task list callback.
      */
-    private static class CollectingListener extends CheckstyleListener<Task> {
+    private class Scan implements Runnable {
+
+        private final FileObject fileObject;
+
+        private final long modified;
+
+        /* GuardedBy("CheckstyleTaskScanner.this") */
+        private CheckExecutor.Handle task;
 
-        private final FileObject file;
+        public Scan (FileObject fileObject) {
+            this.fileObject = fileObject;
+            this.modified = fileObject.lastModified().getTime();
+        }
+
+        /* GuardedBy("CheckstyleTaskScanner.this") */
+        void post () {
+            task = WORKERS.post(this, 0);
+        }
 
-        public CollectingListener (Severity minimalSeverity, FileObject file) {
-            super(minimalSeverity);
-            this.file = file;
+        /* GuardedBy("CheckstyleTaskScanner.this") */
+        void cancel () {
+            task.cancel();
+        }
+
+        /**
+         * Shows the tasks found so far while the file is still being checked.
+         *
+         * @param tasks the tasks found so far
+         */
+        void publish (List<? extends Task> tasks) {
+            Callback current;
+            synchronized (CheckstyleTaskScanner.this) {
+                if (pending.get(fileObject) != this || callback == null) {
+                    return;
+                }
+                partial.put(fileObject, tasks);
+                current = callback;
+            }
+            current.refresh(fileObject);
+        }
+
+        @Override
+        public void run () {
+            List<? extends Task> result = scanFile(fileObject, this);
+            if (result == null) {
+                result = Collections.emptyList();
+            }
+
+            Callback current;
+            synchronized (CheckstyleTaskScanner.this) {
+                // superseded or cancelled meanwhile
+                if (pending.get(fileObject) != this || callback == null) {
+                    return;
+                }
+                pending.remove(fileObject);
+                partial.remove(fileObject);
+                // the partial results answered the scan of the changed file
+                if (fileObject.lastModified().getTime() != modified) {
+                    Scan scan = new Scan(fileObject);
+                    pending.put(fileObject, scan);
+                    scan.post();
+                    return;
+                }
+                finished.put(fileObject, result);
+                current = callback;
+            }
+            current.refresh(fileObject);
+        }
+    }
+
+    /**
+     * Collects the problems of the file, at most {@link #MAX_TASKS} of those
+     * shown as tasks are kept. The tasks found so far are published in
+     * chunks by the background scan, each chunk just appends the new tasks.
+     * Without the background scan nothing is published and the tasks are
+     * created once the file is done.
+     */
+    private static class TaskCollector extends CheckstyleViolation.Collector {
+
+        private final FileObject fileObject;
+
+        private final Severity minimalSeverity;
+
+        private final Scan scan;
+
+        /* GuardedBy("this") */
+        private Task[] tasks = new Task[0];
+
+        /* GuardedBy("this") */
+        private int taskCount;
+
+        public TaskCollector (FileObject fileObject, Severity minimalSeverity, Scan scan) {
+            super(minimalSeverity, MAX_TASKS);
+            this.fileObject = fileObject;
+            this.minimalSeverity = minimalSeverity;
+            this.scan = scan;
         }
 
         @Override
-        public Task createResult (AuditEvent evt) {
-            return Task.create(file, "cz-sickboy-netbeans-checkstyle-Task", // NOI18N
-                evt.getMessage(), evt.getLine());
+        protected void resultAdded (CheckstyleViolation result, int count) {
+            if (scan == null || CHUNK_SIZE <= 0 || !minimalSeverity.include(result.getSeverity())) {
+                return;
+            }
+            List<Task> found;
+            synchronized (this) {
+                if (taskCount == tasks.length) {
+                    tasks = Arrays.copyOf(tasks, Math.max(CHUNK_SIZE, tasks.length * 2));
+                }
+                tasks[taskCount++] = TaskList.createTask(fileObject, result.getMessage(), result.getLine());
+                if (taskCount % CHUNK_SIZE != 0) {
+                    return;
+                }
+                // the published prefix is never written again
+                found = Collections.unmodifiableList(Arrays.asList(tasks).subList(0, taskCount));
+            }
+            scan.publish(found);
         }
     }
 }
@@ -0,0 +1,270 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle.tasklist;
+
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import cz.sickboy.netbeans.checkstyle.Configuration;
+import cz.sickboy.netbeans.checkstyle.ConfigurationLoader;
+import java.io.File;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import org.netbeans.api.project.FileOwnerQuery;
+import org.netbeans.api.project.Project;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+
+/**
+ * Index of the scanned files. For each file it remembers the timestamp and
+ * the size the file had when it was read, and the fingerprint of its content.
+ * An unchanged file can then be looked up in the result cache without being
+ * read again. The index also remembers the configuration used by the scans
+ * of each project, so a configuration change that would produce the same
+ * tasks is recognized.
+ *
+ * @author Petr Hejl
+ */
+class ScanIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(ScanIndex.class.getName());
+
+    /**
+     * The key of the files not owned by any project.
+     */
+    private static final Object NO_PROJECT = new Object();
+
+    private final int maxFiles;
+
+    /* GuardedBy("this") */
+    private final Map<String, Entry> entries;
+
+    /**
+     * The last used configuration and a scanned file for each project
+     * directory.
+     */
+    /* GuardedBy("this") */
+    private final Map<Object, Usage> configurations = new HashMap<Object, Usage>();
+
+    public ScanIndex (final int maxFiles) {
+        this.maxFiles = maxFiles;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry (Map.Entry<String, Entry> eldest) {
+                return size() > ScanIndex.this.maxFiles;
+            }
+        };
+    }
+
+    /**
+     * Returns the content fingerprint of the file if it has not changed since
+     * it was scanned with the equivalent configuration.
+     *
+     * @param file the scanned file
+     * @param config the current configuration of the file
+     * @return the fingerprint of the content or <code>null</code> if the file
+     *             has to be read
+     */
+    public synchronized String getContentHash (File file, Configuration config) {
+        Entry entry = entries.get(file.getAbsolutePath());
+        // without the fingerprint the equivalence of the configurations is unknown
+        if (entry == null || entry.fingerprint == null || !entry.fingerprint.equals(config.getFingerprint())
+            || entry.modified != file.lastModified() || entry.size != file.length())
+        {
+            return null;
+        }
+        return entry.contentHash;
+    }
+
+    /**
+     * Stores the state of the file as it was read.
+     *
+     * @param file the scanned file
+     * @param modified the timestamp of the file before it was read
+     * @param size the size of the file before it was read
+     * @param config the configuration used for checking
+     * @param contentHash the fingerprint of the read content
+     */
+    public synchronized void put (File file, long modified, long size, Configuration config, String contentHash) {
+        entries.put(file.getAbsolutePath(), new Entry(modified, size, config.getFingerprint(), contentHash));
+    }
+
+    /**
+     * Remembers the configuration was used for scanning the file. All the
+     * files of a project share the configuration, so just one file is
+     * remembered for each project.
+     *
+     * @param config the used configuration
+     * @param fileObject the scanned file
+     * @param file the scanned file
+     */
+    public void use (Configuration config, FileObject fileObject, File file) {
+        Object owner = getOwner(fileObject);
+        Object key = owner != null ? owner : NO_PROJECT;
+        synchronized (this) {
+            Usage usage = configurations.get(key);
+            if (usage == null || usage.config != config) {
+                configurations.put(key, new Usage(config, file));
+            }
+        }
+    }
+
+    /**
+     * Returns whether the change of the configurations could change the
+     * tasks of the scanned files. When it could not, the index continues
+     * with the current configurations. When it could, the configurations
+     * are forgotten, the rescan of the files records the new ones.
+     *
+     * @return <code>true</code> if the files have to be scanned again
+     */
+    public boolean isAffected () {
+        Map<Object, Usage> used;
+        synchronized (this) {
+            used = new HashMap<Object, Usage>(configurations);
+        }
+        if (used.isEmpty()) {
+            return true;
+        }
+
+        Map<Object, Usage> current = getCurrent(used);
+        synchronized (this) {
+            for (Map.Entry<Object, Usage> entry : used.entrySet()) {
+                // keep what the scans recorded meanwhile
+                if (configurations.get(entry.getKey()) != entry.getValue()) {
+                    continue;
+                }
+                if (current != null) {
+                    configurations.put(entry.getKey(), current.get(entry.getKey()));
+                } else {
+                    configurations.remove(entry.getKey());
+                }
+            }
+        }
+        return current == null;
+    }
+
+    public synchronized void clear () {
+        entries.clear();
+        configurations.clear();
+    }
+
+    /**
+     * Returns the current configurations of the projects.
+     *
+     * @param used the configurations used by the scans
+     * @return the current configurations or <code>null</code> if any of
+     *             them could produce different tasks
+     */
+    private Map<Object, Usage> getCurrent (Map<Object, Usage> used) {
+        Map<Object, Usage> current = new HashMap<Object, Usage>();
+        for (Map.Entry<Object, Usage> entry : used.entrySet()) {
+            File file = entry.getValue().file;
+            FileObject fileObject = FileUtil.toFileObject(file);
+            if (fileObject == null) {
+                return null;
+            }
+            try {
+                Configuration config = getConfiguration(fileObject);
+                if (!hasSameTasks(entry.getValue().config, config)) {
+                    return null;
+                }
+                current.put(entry.getKey(), new Usage(config, file));
+            } catch (CheckstyleException ex) {
+                LOGGER.log(Level.FINE, null, ex);
+                return null;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Returns the directory of the project owning the file.
+     *
+     * @param fileObject the scanned file
+     * @return the project directory or <code>null</code> if the file is not
+     *             owned by any project
+     */
+    Object getOwner (FileObject fileObject) {
+        Project owner = FileOwnerQuery.getOwner(fileObject);
+        return owner != null ? owner.getProjectDirectory() : null;
+    }
+
+    Configuration getConfiguration (FileObject fileObject) throws CheckstyleException {
+        return ConfigurationLoader.getDefault().getConfiguration(fileObject);
+    }
+
+    /**
+     * Returns whether the checks with both configurations report the same
+     * problems.
+     */
+    static boolean hasSameResults (Configuration previous, Configuration current) {
+        return previous == current
+            || (previous.getFingerprint() != null && previous.getFingerprint().equals(current.getFingerprint()));
+    }
+
+    /**
+     * Returns whether both configurations produce the same tasks.
+     */
+    static boolean hasSameTasks (Configuration previous, Configuration current) {
+        return hasSameResults(previous, current) && previous.getSeverity() == current.getSeverity()
+            && equals(previous.getIgnoredPathsPattern(), current.getIgnoredPathsPattern())
+            && equals(previous.getCheckedPathsPattern(), current.getCheckedPathsPattern());
+    }
+
+    private static boolean equals (Pattern previous, Pattern current) {
+        if (previous == null || current == null) {
+            return previous == current;
+        }
+        return previous.pattern().equals(current.pattern()) && previous.flags() == current.flags();
+    }
+
+    private static final class Usage {
+
+        private final Configuration config;
+
+        private final File file;
+
+        public Usage (Configuration config, File file) {
+            this.config = config;
+            this.file = file;
+        }
+    }
+
+    private static final class Entry {
+
+        private final long modified;
+
+        private final long size;
+
+        /** Not the configuration itself, there may be plenty of entries. */
+        private final String fingerprint;
+
+        private final String contentHash;
+
+        public Entry (long modified, long size, String fingerprint, String contentHash) {
+            this.modified = modified;
+            this.size = size;
+            this.fingerprint = fingerprint;
+            this.contentHash = contentHash;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle.tasklist;
+
+import cz.sickboy.netbeans.checkstyle.CompactViolationList;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import org.netbeans.spi.tasklist.Task;
+import org.openide.filesystems.FileObject;
+import org.openide.util.NbBundle;
+
+/**
+ * Unmodifiable list of the tasks of a single file backed by the compact
+ * problems. The task is created once it is accessed for the first time.
+ *
+ * @author Petr Hejl
+ */
+final class TaskList extends AbstractList<Task> implements RandomAccess {
+
+    private static final String GROUP = "cz-sickboy-netbeans-checkstyle-Task"; // NOI18N
+
+    private final FileObject fileObject;
+
+    private final CompactViolationList violations;
+
+    private final int[] indices;
+
+    private final int dropped;
+
+    /* GuardedBy("this") */
+    private final Task[] tasks;
+
+    /**
+     * Creates the list of the tasks.
+     *
+     * @param fileObject the file of the problems
+     * @param violations the problems of the file
+     * @param indices the indices of the shown problems
+     * @param dropped the number of the problems summarized by the last task,
+     *             <code>0</code> if there are none
+     */
+    public TaskList (FileObject fileObject, CompactViolationList violations, int[] indices, int dropped) {
+        this.fileObject = fileObject;
+        this.violations = violations;
+        this.indices = indices;
+        this.dropped = dropped;
+        this.tasks = new Task[size()];
+    }
+
+    @Override
+    public synchronized Task get (int index) {
+        Task task = tasks[index];
+        if (task == null) {
+            if (index < indices.length) {
+                int violation = indices[index];
+                task = createTask(fileObject, violations.getMessage(violation), violations.getLine(violation));
+            } else {
+                task = Task.create(fileObject, GROUP, NbBundle.getMessage(
+                    CheckstyleTaskScanner.class, "CheckstyleTaskScanner.overflow", dropped), 1); // NOI18N
+            }
+            tasks[index] = task;
+        }
+        return task;
+    }
+
+    @Override
+    public int size () {
+        return dropped > 0 ? indices.length + 1 : indices.length;
+    }
+
+    static Task createTask (FileObject fileObject, String message, int line) {
+        return Task.create(fileObject, GROUP, message, line);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.prefs.Preferences;
+import junit.framework.TestCase;
+import org.openide.util.NbPreferences;
+
+/**
+ *
+ * @author Petr Hejl
+ */
+public class CancellableCheckerTest extends TestCase {
+
+    private static final String SOURCE = "package test;\n\npublic class Test {\n    public int a;\n}\n"; // NOI18N
+
+    private File file;
+
+    public CancellableCheckerTest (String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp () throws Exception {
+        super.setUp();
+        file = File.createTempFile("Test", ".java"); // NOI18N
+        Files.write(file.toPath(), SOURCE.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    protected void tearDown () throws Exception {
+        assertTrue(file.delete());
+        Preferences prefs = NbPreferences.forModule(CheckstyleSettings.class);
+        prefs.removeNode();
+
+        super.tearDown();
+    }
+
+    public void testProcessText () throws Exception {
+        Configuration config = ConfigurationLoader.getDefault().getConfiguration();
+        CheckerPool pool = new CheckerPool(2, 1);
+
+        // some checks report the problem just once per checker
+        CancellableChecker fileChecker = pool.acquireChecker(config, null, null);
+        CancellableChecker checker = pool.acquireChecker(config, null, null);
+        try {
+            CheckstyleViolation.Collector fromFile = new CheckstyleViolation.Collector();
+            fileChecker.addListener(fromFile);
+            fileChecker.process(Collections.singletonList(file));
+            fileChecker.removeListener(fromFile);
+
+            CheckstyleViolation.Collector fromText = new CheckstyleViolation.Collector();
+            checker.addListener(fromText);
+            checker.process(file, SourceText.create(file, SOURCE).getFileText());
+            checker.removeListener(fromText);
+
+            assertFalse(fromFile.getResults().isEmpty());
+            assertEquals(fromFile.getResults().toString(), fromText.getResults().toString());
+
+            // the text is checked, not the file
+            CheckstyleViolation.Collector modified = new CheckstyleViolation.Collector();
+            fileChecker.addListener(modified);
+            fileChecker.process(file, SourceText.create(file, SOURCE.replace("public int a;", "private int a;")) // NOI18N
+                .getFileText());
+            fileChecker.removeListener(modified);
+
+            assertTrue(modified.getResults().size() < fromText.getResults().size());
+        } finally {
+            pool.releaseChecker(checker);
+            pool.releaseChecker(fileChecker);
+        }
+    }
+
+    public void testCancelWalk () throws Exception {
+        StringBuilder source = new StringBuilder("package test;\n\npublic class Test {\n"); // NOI18N
+        for (int i = 0; i < 1000; i++) {
+            source.append("    public int a").append(i).append(";\n"); // NOI18N
+            source.append("    public int b").append(i).append(" () {\n        return a").append(i) // NOI18N
+                .append(";\n    }\n"); // NOI18N
+        }
+        source.append("}\n"); // NOI18N
+
+        Configuration config = ConfigurationLoader.getDefault().getConfiguration();
+        CheckerPool pool = new CheckerPool(1, 1);
+        final AtomicInteger calls = new AtomicInteger();
+        CancellableChecker checker = pool.acquireChecker(config, null, new CancellableChecker.CancellationHook() {
+
+            @Override
+            public boolean isCanceled () {
+                return calls.incrementAndGet() > 20;
+            }
+        });
+        try {
+            CheckstyleViolation.Collector listener = new CheckstyleViolation.Collector();
+            checker.addListener(listener);
+            checker.process(file, SourceText.create(file, source).getFileText());
+            checker.removeListener(listener);
+
+            // the walk stopped right away, not after visiting all the nodes
+            assertTrue(String.valueOf(calls.get()), calls.get() < 40);
+            for (CheckstyleViolation violation : listener.getResults()) {
+                assertFalse(violation.getSource().endsWith("VisibilityModifierCheck")); // NOI18N
+            }
+        } finally {
+            pool.releaseChecker(checker);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Petr Hejl
+ */
+public class CheckExecutorTest extends TestCase {
+
+    private ExecutorService threads;
+
+    public CheckExecutorTest (String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp () throws Exception {
+        super.setUp();
+        threads = Executors.newCachedThreadPool();
+    }
+
+    @Override
+    protected void tearDown () throws Exception {
+        threads.shutdownNow();
+        super.tearDown();
+    }
+
+    public void testCancelPending () throws Exception {
+        CheckExecutor executor = new CheckExecutor.VirtualThreadExecutor(threads, new Semaphore(1));
+        final AtomicBoolean run = new AtomicBoolean();
+        CheckExecutor.Handle handle = executor.post(new Runnable() {
+
+            @Override
+            public void run () {
+                run.set(true);
+            }
+        }, 200);
+
+        assertTrue(handle.cancel());
+        Thread.sleep(400);
+        assertFalse(run.get());
+    }
+
+    public void testPermits () throws Exception {
+        CheckExecutor executor = new CheckExecutor.VirtualThreadExecutor(threads, new Semaphore(2));
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch finished = new CountDownLatch(10);
+        for (int i = 0; i < 10; i++) {
+            executor.post(new Runnable() {
+
+                @Override
+                public void run () {
+                    int current = running.incrementAndGet();
+                    maxRunning.set(Math.max(maxRunning.get(), current));
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        running.decrementAndGet();
+                        finished.countDown();
+                    }
+                }
+            }, 0);
+        }
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertTrue(maxRunning.get() <= 2);
+    }
+
+    public void testInterruptRunning () throws Exception {
+        CheckExecutor executor = new CheckExecutor.VirtualThreadExecutor(threads, new Semaphore(1));
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        CheckExecutor.Handle handle = executor.post(new Runnable() {
+
+            @Override
+            public void run () {
+                started.countDown();
+                try {
+                    Thread.sleep(10000);
+                } catch (InterruptedException ex) {
+                    interrupted.countDown();
+                }
+            }
+        }, 0);
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertFalse(handle.cancel());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle;
+
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import java.util.prefs.Preferences;
+import junit.framework.TestCase;
+import org.openide.util.NbPreferences;
+
+/**
+ *
+ * @author Petr Hejl
+ */
+public class CheckerPoolTest extends TestCase {
+
+    public CheckerPoolTest (String name) {
+        super(name);
+    }
+
+    @Override
+    protected void tearDown () throws Exception {
+        Preferences prefs = NbPreferences.forModule(CheckstyleSettings.class);
+        prefs.removeNode();
+
+        super.tearDown();
+    }
+
+    public void testReuse () throws CheckstyleException {
+        Configuration config = ConfigurationLoader.getDefault().getConfiguration();
+        CheckerPool pool = new CheckerPool(1, 2);
+
+        CancellableChecker checker1 = pool.acquireChecker(config, null, null);
+        CancellableChecker checker2 = pool.acquireChecker(config, null, null);
+        assertNotSame(checker1, checker2);
+        assertEquals(0, pool.getHitCount());
+        assertEquals(2, pool.getMissCount());
+
+        pool.releaseChecker(checker1);
+        pool.releaseChecker(checker2);
+        assertEquals(1, pool.getIdleCount());
+
+        assertSame(checker1, pool.acquireChecker(config, null, null));
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(1, pool.getHitCount());
+    }
+
+    public void testSharedConfiguration () throws CheckstyleException {
+        Configuration config = ConfigurationLoader.getDefault().getConfiguration();
+        Configuration other = new Configuration(Severity.ERROR, config.getCheckstyleConfiguration(),
+            config.getCheckstyleClassLoader(), null, null, config.getFingerprint());
+        CheckerPool pool = new CheckerPool(1, 2);
+
+        CancellableChecker checker = pool.acquireChecker(config, null, null);
+        pool.releaseChecker(checker);
+
+        assertSame(checker, pool.acquireChecker(other, null, null));
+        pool.releaseChecker(checker);
+        assertEquals(1, pool.getEntryCount());
+    }
+
+    public void testClassLoaderKey () throws CheckstyleException {
+        Configuration config = ConfigurationLoader.getDefault().getConfiguration();
+        ClassLoader loader = new ClassLoader() { };
+        CheckerPool pool = new CheckerPool(2, 2);
+
+        CancellableChecker checker = pool.acquireChecker(config, loader, null);
+        pool.releaseChecker(checker);
+
+        CancellableChecker other = pool.acquireChecker(config, null, null);
+        assertNotSame(checker, other);
+        pool.releaseChecker(other);
+        assertEquals(2, pool.getEntryCount());
+
+        assertSame(checker, pool.acquireChecker(config, loader, null));
+        pool.releaseChecker(checker);
+    }
+
+    public void testEviction () throws CheckstyleException {
+        Configuration config = ConfigurationLoader.getDefault().getConfiguration();
+        ClassLoader loader1 = new ClassLoader() { };
+        ClassLoader loader2 = new ClassLoader() { };
+        CheckerPool pool = new CheckerPool(2, 2);
+
+        CancellableChecker checker = pool.acquireChecker(config, null, null);
+        pool.releaseChecker(checker);
+        pool.releaseChecker(pool.acquireChecker(config, loader1, null));
+
+        // touch the first entry so the second one is least recently used
+        checker = pool.acquireChecker(config, null, null);
+        pool.releaseChecker(checker);
+
+        pool.releaseChecker(pool.acquireChecker(config, loader2, null));
+        assertEquals(2, pool.getEntryCount());
+        assertEquals(1, pool.getEvictionCount());
+
+        assertSame(checker, pool.acquireChecker(config, null, null));
+        pool.releaseChecker(checker);
+    }
+
+    public void testClear () throws CheckstyleException {
+        Configuration config = ConfigurationLoader.getDefault().getConfiguration();
+        CheckerPool pool = new CheckerPool(2, 2);
+
+        CancellableChecker checker = pool.acquireChecker(config, null, null);
+        CancellableChecker busyChecker = pool.acquireChecker(config, null, null);
+        pool.releaseChecker(checker);
+        assertEquals(1, pool.getIdleCount());
+
+        pool.clear();
+        assertEquals(0, pool.getIdleCount());
+
+        // released checker acquired before the clear is not pooled
+        pool.releaseChecker(busyChecker);
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    public void testTrim () throws CheckstyleException {
+        Configuration config = ConfigurationLoader.getDefault().getConfiguration();
+        CheckerPool pool = new CheckerPool(2, 2);
+
+        CancellableChecker checker1 = pool.acquireChecker(config, null, null);
+        CancellableChecker checker2 = pool.acquireChecker(config, null, null);
+        pool.releaseChecker(checker1);
+        pool.releaseChecker(checker2);
+        assertEquals(2, pool.getIdleCount());
+
+        pool.trim();
+        assertEquals(1, pool.getIdleCount());
+    }
+}
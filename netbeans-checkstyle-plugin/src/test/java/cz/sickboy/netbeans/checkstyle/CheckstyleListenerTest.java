@@ -0,0 +1,83 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+import com.puppycrawl.tools.checkstyle.api.Violation;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Petr Hejl
+ */
+public class CheckstyleListenerTest extends TestCase {
+
+    public CheckstyleListenerTest (String name) {
+        super(name);
+    }
+
+    public void testMaxResults () {
+        final List<Integer> counts = new ArrayList<Integer>();
+        CheckstyleViolation.Collector collector = new CheckstyleViolation.Collector(Severity.IGNORE, 3) {
+
+            @Override
+            protected void resultAdded (CheckstyleViolation result, int count) {
+                counts.add(count);
+            }
+        };
+
+        for (int i = 1; i <= 5; i++) {
+            collector.addError(createEvent(i, SeverityLevel.WARNING));
+        }
+        // not a problem of any line
+        collector.addError(createEvent(0, SeverityLevel.WARNING));
+
+        assertEquals(3, collector.getResults().size());
+        assertEquals(3, collector.getResults().get(2).getLine());
+        assertEquals(2, collector.getOverflowCount());
+        assertEquals("[1, 2, 3]", counts.toString()); // NOI18N
+    }
+
+    public void testLimitedSeverity () {
+        CheckstyleViolation.Collector collector = new CheckstyleViolation.Collector(Severity.WARNING, 2);
+
+        SeverityLevel[] severities = {SeverityLevel.INFO, SeverityLevel.WARNING, SeverityLevel.INFO,
+            SeverityLevel.ERROR, SeverityLevel.WARNING, SeverityLevel.INFO, SeverityLevel.ERROR};
+        for (int i = 0; i < severities.length; i++) {
+            collector.addError(createEvent(i + 1, severities[i]));
+        }
+
+        // the problems below the limited severity neither count nor overflow
+        List<Integer> lines = new ArrayList<Integer>();
+        for (CheckstyleViolation violation : collector.getResults()) {
+            lines.add(violation.getLine());
+        }
+        assertEquals("[1, 2, 3, 4, 6]", lines.toString()); // NOI18N
+        assertEquals(2, collector.getOverflowCount());
+    }
+
+    private static AuditEvent createEvent (int line, SeverityLevel severity) {
+        Violation violation = new Violation(line, 1, "messages", "key", null, severity, null, // NOI18N
+            CheckstyleListenerTest.class, "Problem " + line); // NOI18N
+        return new AuditEvent(CheckstyleListenerTest.class, "Test.java", violation); // NOI18N
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle;
+
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Petr Hejl
+ */
+public class CompactViolationListTest extends TestCase {
+
+    public CompactViolationListTest (String name) {
+        super(name);
+    }
+
+    public void testCreate () {
+        List<CheckstyleViolation> violations = Arrays.asList(
+            new CheckstyleViolation(1, 2, SeverityLevel.WARNING, "a", "Check"), // NOI18N
+            new CheckstyleViolation(3, 0, SeverityLevel.ERROR, new String("a"), null), // NOI18N
+            new CheckstyleViolation(4, 5, SeverityLevel.INFO, "b", "Check")); // NOI18N
+
+        CompactViolationList compact = CompactViolationList.create(violations);
+        assertEquals(3, compact.size());
+        assertSame(compact, CompactViolationList.create(compact));
+
+        assertEquals(3, compact.getLine(1));
+        assertEquals(5, compact.getColumn(2));
+        assertEquals(SeverityLevel.ERROR, compact.getSeverity(1));
+        assertSame(compact.getMessage(0), compact.getMessage(1));
+        assertEquals("b", compact.getMessage(2)); // NOI18N
+        assertEquals("Check", compact.getSource(0)); // NOI18N
+        assertNull(compact.getSource(1));
+
+        CheckstyleViolation violation = compact.get(2);
+        assertEquals(4, violation.getLine());
+        assertEquals(5, violation.getColumn());
+        assertEquals(SeverityLevel.INFO, violation.getSeverity());
+        assertEquals("b", violation.getMessage()); // NOI18N
+        assertEquals("Check", violation.getSource()); // NOI18N
+
+        try {
+            compact.add(violation);
+            fail("The list is unmodifiable"); // NOI18N
+        } catch (UnsupportedOperationException ex) {
+            // expected
+        }
+    }
+}
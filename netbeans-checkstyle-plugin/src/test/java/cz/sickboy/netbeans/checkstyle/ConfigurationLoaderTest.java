@@ -20,9 +20,18 @@ package cz.sickboy.netbeans.checkstyle;
 
 import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.prefs.Preferences;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import junit.framework.TestCase;
+import org.openide.filesystems.FileUtil;
 import org.openide.util.NbPreferences;
 
 /**
@@ -37,6 +46,8 @@ public class ConfigurationLoaderTest extends TestCase {
 
     @Override
     protected void tearDown () throws Exception {
+        // no reload of the deleted files is left pending
+        ConfigurationLoader.reset();
         Preferences prefs = NbPreferences.forModule(CheckstyleSettings.class);
         prefs.removeNode();
 
@@ -70,6 +81,333 @@ public class ConfigurationLoaderTest extends TestCase {
         assertEquals(refreshedClassLoader, CheckstyleModule.class.getClassLoader());
     }
 
+    public void testFingerprint () throws CheckstyleException {
+        ConfigurationLoader loader = ConfigurationLoader.getDefault();
+        String fingerprint = loader.getConfiguration().getFingerprint();
+        assertNotNull(fingerprint);
+
+        loader.reloadConfiguration();
+        assertEquals(fingerprint, loader.getConfiguration().getFingerprint());
+    }
+
+    public void testIncrementalReload () throws Exception {
+        ConfigurationLoader loader = ConfigurationLoader.getDefault();
+        CheckstyleSettings settings = CheckstyleSettings.getDefault();
+
+        File configFile = File.createTempFile("checkstyle", ".xml"); // NOI18N
+        try {
+            Files.write(configFile.toPath(), ("<?xml version=\"1.0\"?>\n" // NOI18N
+                + "<!DOCTYPE module PUBLIC \"-//Checkstyle//DTD Checkstyle Configuration 1.3//EN\"" // NOI18N
+                + " \"https://checkstyle.org/dtds/configuration_1_3.dtd\">\n" // NOI18N
+                + "<module name=\"Checker\"><module name=\"FileLength\">" // NOI18N
+                + "<property name=\"max\" value=\"${max}\"/></module></module>\n") // NOI18N
+                .getBytes(StandardCharsets.UTF_8));
+
+            Properties properties = new Properties();
+            properties.setProperty("max", "100"); // NOI18N
+            settings.setValues(new CheckstyleSettings.Values(Severity.WARNING, configFile.getAbsolutePath(),
+                null, null, properties, null, null));
+            Configuration config = loader.getConfiguration();
+
+            // the severity and patterns don't need the configuration to be loaded again
+            settings.setValues(new CheckstyleSettings.Values(Severity.ERROR, configFile.getAbsolutePath(),
+                null, null, properties, "ignored", null)); // NOI18N
+            Configuration severityConfig = loader.getConfiguration();
+            assertNotSame(config, severityConfig);
+            assertEquals(Severity.ERROR, severityConfig.getSeverity());
+            assertSame(config.getCheckstyleConfiguration(), severityConfig.getCheckstyleConfiguration());
+            assertSame(config.getCheckstyleClassLoader(), severityConfig.getCheckstyleClassLoader());
+            assertEquals(config.getFingerprint(), severityConfig.getFingerprint());
+
+            properties.setProperty("max", "200"); // NOI18N
+            settings.setValues(new CheckstyleSettings.Values(Severity.ERROR, configFile.getAbsolutePath(),
+                null, null, properties, "ignored", null)); // NOI18N
+            Configuration propertyConfig = loader.getConfiguration();
+            assertNotSame(severityConfig.getCheckstyleConfiguration(), propertyConfig.getCheckstyleConfiguration());
+            assertFalse(severityConfig.getFingerprint().equals(propertyConfig.getFingerprint()));
+
+            // content change of the same file
+            Files.write(configFile.toPath(), new String(Files.readAllBytes(configFile.toPath()),
+                StandardCharsets.UTF_8).replace("FileLength", "LineLength").getBytes(StandardCharsets.UTF_8)); // NOI18N
+            settings.setValues(new CheckstyleSettings.Values(Severity.WARNING, configFile.getAbsolutePath(),
+                null, null, properties, "ignored", null)); // NOI18N
+            Configuration contentConfig = loader.getConfiguration();
+            assertEquals("LineLength", contentConfig.getCheckstyleConfiguration() // NOI18N
+                .getChildren()[0].getName());
+        } finally {
+            assertTrue(configFile.delete());
+        }
+    }
+
+    public void testReset () throws Exception {
+        ConfigurationLoader loader = ConfigurationLoader.getDefault();
+        final AtomicInteger changes = new AtomicInteger();
+        loader.addChangeListener(new ChangeListener() {
+
+            @Override
+            public void stateChanged (ChangeEvent e) {
+                changes.incrementAndGet();
+            }
+        });
+
+        // schedules the reload yielding the changed configuration
+        CheckstyleSettings.getDefault().setValues(new CheckstyleSettings.Values(Severity.INFO, null,
+            null, null, null, null, null));
+        ConfigurationLoader.reset();
+        Thread.sleep(1000);
+        assertEquals(0, changes.get());
+        assertNotSame(loader, ConfigurationLoader.getDefault());
+    }
+
+    public void testReferencedProperties () throws Exception {
+        ConfigurationLoader loader = ConfigurationLoader.getDefault();
+        CheckstyleSettings settings = CheckstyleSettings.getDefault();
+
+        File configFile = File.createTempFile("checkstyle", ".xml"); // NOI18N
+        try {
+            Files.write(configFile.toPath(), ("<?xml version=\"1.0\"?>\n" // NOI18N
+                + "<!DOCTYPE module PUBLIC \"-//Checkstyle//DTD Checkstyle Configuration 1.3//EN\"" // NOI18N
+                + " \"https://checkstyle.org/dtds/configuration_1_3.dtd\">\n" // NOI18N
+                + "<module name=\"Checker\"><module name=\"FileLength\">" // NOI18N
+                + "<property name=\"max\" value=\"${max}\"/></module></module>\n") // NOI18N
+                .getBytes(StandardCharsets.UTF_8));
+
+            Properties properties = new Properties();
+            properties.setProperty("max", "100"); // NOI18N
+            properties.setProperty("unused", "a"); // NOI18N
+            settings.setValues(new CheckstyleSettings.Values(Severity.WARNING, configFile.getAbsolutePath(),
+                null, null, properties, null, null));
+            Configuration config = loader.getConfiguration();
+
+            // the property the configuration does not refer to
+            properties.setProperty("unused", "b"); // NOI18N
+            settings.setValues(new CheckstyleSettings.Values(Severity.WARNING, configFile.getAbsolutePath(),
+                null, null, properties, null, null));
+            assertSame(config.getCheckstyleConfiguration(), loader.getConfiguration().getCheckstyleConfiguration());
+
+            properties.setProperty("max", "200"); // NOI18N
+            settings.setValues(new CheckstyleSettings.Values(Severity.WARNING, configFile.getAbsolutePath(),
+                null, null, properties, null, null));
+            assertNotSame(config.getCheckstyleConfiguration(), loader.getConfiguration().getCheckstyleConfiguration());
+        } finally {
+            assertTrue(configFile.delete());
+        }
+    }
+
+    public void testResolveConfigFile () {
+        File directory = new File(System.getProperty("java.io.tmpdir"), "project"); // NOI18N
+        String absolute = new File(directory, "absolute.xml").getAbsolutePath(); // NOI18N
+
+        assertNull(ConfigurationLoader.resolveConfigFile(directory, null));
+        assertNull(ConfigurationLoader.resolveConfigFile(directory, " ")); // NOI18N
+        assertEquals(absolute, ConfigurationLoader.resolveConfigFile(directory, absolute));
+        assertEquals("https://example.org/checks.xml", // NOI18N
+            ConfigurationLoader.resolveConfigFile(directory, "https://example.org/checks.xml")); // NOI18N
+        assertEquals("classpath:checks.xml", // NOI18N
+            ConfigurationLoader.resolveConfigFile(directory, "classpath:checks.xml")); // NOI18N
+
+        // resolved against the project even when missing, never the working directory
+        assertEquals(FileUtil.normalizeFile(new File(directory, "config/missing.xml")).getAbsolutePath(), // NOI18N
+            ConfigurationLoader.resolveConfigFile(directory, "config/missing.xml")); // NOI18N
+        assertNull(ConfigurationLoader.resolveConfigFile(null, "config/missing.xml")); // NOI18N
+    }
+
+    public void testProjectConfigFilePreference () throws Exception {
+        ConfigurationLoader loader = ConfigurationLoader.getDefault();
+        File directory = new File(System.getProperty("java.io.tmpdir"), "project"); // NOI18N
+        Preferences prefs = NbPreferences.forModule(CheckstyleSettings.class).node("project"); // NOI18N
+        prefs.put(ConfigurationLoader.PROP_PROJECT_CONFIG_FILE, "first.xml"); // NOI18N
+
+        ConfigurationLoader.ProjectConfigFile configFile = loader.new ProjectConfigFile(directory, prefs);
+        assertEquals(FileUtil.normalizeFile(new File(directory, "first.xml")).getAbsolutePath(), // NOI18N
+            configFile.getConfigFile());
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        loader.addChangeListener(new ChangeListener() {
+
+            @Override
+            public void stateChanged (ChangeEvent e) {
+                latch.countDown();
+            }
+        });
+
+        prefs.remove(ConfigurationLoader.PROP_PROJECT_CONFIG_FILE);
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertNull(configFile.getConfigFile());
+    }
+
+    public void testUrlConfiguration () throws Exception {
+        ConfigurationLoader loader = ConfigurationLoader.getDefault();
+        CheckstyleSettings settings = CheckstyleSettings.getDefault();
+
+        File configFile = File.createTempFile("checkstyle", ".xml"); // NOI18N
+        try {
+            Files.write(configFile.toPath(), ("<?xml version=\"1.0\"?>\n" // NOI18N
+                + "<!DOCTYPE module PUBLIC \"-//Checkstyle//DTD Checkstyle Configuration 1.3//EN\"" // NOI18N
+                + " \"https://checkstyle.org/dtds/configuration_1_3.dtd\">\n" // NOI18N
+                + "<module name=\"Checker\"><module name=\"FileLength\"/></module>\n") // NOI18N
+                .getBytes(StandardCharsets.UTF_8));
+            String url = configFile.toURI().toString();
+
+            settings.setValues(new CheckstyleSettings.Values(Severity.WARNING, url, null, null, null, null, null));
+            assertEquals("FileLength", loader.getConfiguration().getCheckstyleConfiguration() // NOI18N
+                .getChildren()[0].getName());
+
+            // the url is not watched, it is fetched again on the settings change
+            Files.write(configFile.toPath(), new String(Files.readAllBytes(configFile.toPath()),
+                StandardCharsets.UTF_8).replace("FileLength", "LineLength").getBytes(StandardCharsets.UTF_8)); // NOI18N
+            settings.setValues(new CheckstyleSettings.Values(Severity.ERROR, url, null, null, null, null, null));
+            assertEquals("LineLength", loader.getConfiguration().getCheckstyleConfiguration() // NOI18N
+                .getChildren()[0].getName());
+        } finally {
+            assertTrue(configFile.delete());
+        }
+    }
+
+    public void testReferencedFile () throws Exception {
+        ConfigurationLoader loader = ConfigurationLoader.getDefault();
+        CheckstyleSettings settings = CheckstyleSettings.getDefault();
+
+        File configFile = FileUtil.normalizeFile(File.createTempFile("checkstyle", ".xml")); // NOI18N
+        File suppressions = FileUtil.normalizeFile(File.createTempFile("suppressions", ".xml")); // NOI18N
+        try {
+            Files.write(configFile.toPath(), ("<?xml version=\"1.0\"?>\n" // NOI18N
+                + "<!DOCTYPE module PUBLIC \"-//Checkstyle//DTD Checkstyle Configuration 1.3//EN\"" // NOI18N
+                + " \"https://checkstyle.org/dtds/configuration_1_3.dtd\">\n" // NOI18N
+                + "<module name=\"Checker\"><module name=\"SuppressionFilter\">" // NOI18N
+                + "<property name=\"file\" value=\"" + suppressions.getAbsolutePath() + "\"/>" // NOI18N
+                + "</module></module>\n").getBytes(StandardCharsets.UTF_8)); // NOI18N
+            Files.write(suppressions.toPath(), "<suppressions/>".getBytes(StandardCharsets.UTF_8)); // NOI18N
+
+            settings.setValues(new CheckstyleSettings.Values(Severity.WARNING, configFile.getAbsolutePath(),
+                null, null, null, null, null));
+            Configuration config = loader.getConfiguration();
+            assertTrue(loader.getWatchedFiles().contains(suppressions));
+
+            // nothing changed, the configuration is reused
+            settings.setValues(new CheckstyleSettings.Values(Severity.ERROR, configFile.getAbsolutePath(),
+                null, null, null, null, null));
+            Configuration severityConfig = loader.getConfiguration();
+            assertSame(config.getCheckstyleConfiguration(), severityConfig.getCheckstyleConfiguration());
+            assertEquals(config.getFingerprint(), severityConfig.getFingerprint());
+
+            Files.write(suppressions.toPath(), ("<suppressions><suppress checks=\".*\" files=\"Test\"/>" // NOI18N
+                + "</suppressions>").getBytes(StandardCharsets.UTF_8)); // NOI18N
+            settings.setValues(new CheckstyleSettings.Values(Severity.WARNING, configFile.getAbsolutePath(),
+                null, null, null, null, null));
+            Configuration changedConfig = loader.getConfiguration();
+            assertNotSame(config.getCheckstyleConfiguration(), changedConfig.getCheckstyleConfiguration());
+            assertFalse(config.getFingerprint().equals(changedConfig.getFingerprint()));
+            assertTrue(loader.getWatchedFiles().contains(suppressions));
+        } finally {
+            assertTrue(configFile.delete());
+            assertTrue(suppressions.delete());
+        }
+    }
+
+    public void testWatchedFile () throws Exception {
+        final ConfigurationLoader loader = ConfigurationLoader.getDefault();
+        CheckstyleSettings settings = CheckstyleSettings.getDefault();
+
+        File configFile = FileUtil.normalizeFile(File.createTempFile("checkstyle", ".xml")); // NOI18N
+        try {
+            Files.write(configFile.toPath(), ("<?xml version=\"1.0\"?>\n" // NOI18N
+                + "<!DOCTYPE module PUBLIC \"-//Checkstyle//DTD Checkstyle Configuration 1.3//EN\"" // NOI18N
+                + " \"https://checkstyle.org/dtds/configuration_1_3.dtd\">\n" // NOI18N
+                + "<module name=\"Checker\"><module name=\"FileLength\"/></module>\n") // NOI18N
+                .getBytes(StandardCharsets.UTF_8));
+
+            settings.setValues(new CheckstyleSettings.Values(Severity.WARNING, configFile.getAbsolutePath(),
+                null, null, null, null, null));
+            assertEquals("FileLength", loader.getConfiguration().getCheckstyleConfiguration() // NOI18N
+                .getChildren()[0].getName());
+            assertTrue(loader.getWatchedFiles().contains(configFile));
+
+            final CountDownLatch reloaded = new CountDownLatch(1);
+            ChangeListener listener = new ChangeListener() {
+
+                @Override
+                public void stateChanged (ChangeEvent e) {
+                    try {
+                        if ("LineLength".equals(loader.getConfiguration().getCheckstyleConfiguration() // NOI18N
+                            .getChildren()[0].getName()))
+                        {
+                            reloaded.countDown();
+                        }
+                    } catch (CheckstyleException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                }
+            };
+            loader.addChangeListener(listener);
+            try {
+                Files.write(configFile.toPath(), new String(Files.readAllBytes(configFile.toPath()),
+                    StandardCharsets.UTF_8).replace("FileLength", "LineLength") // NOI18N
+                    .getBytes(StandardCharsets.UTF_8));
+                assertTrue(configFile.setLastModified(configFile.lastModified() + 10000));
+                FileUtil.refreshFor(configFile);
+
+                assertTrue(reloaded.await(10, TimeUnit.SECONDS));
+            } finally {
+                loader.removeChangeListener(listener);
+            }
+
+            settings.setValues(new CheckstyleSettings.Values(Severity.WARNING, null,
+                null, null, null, null, null));
+            loader.getConfiguration();
+            assertFalse(loader.getWatchedFiles().contains(configFile));
+        } finally {
+            assertTrue(configFile.delete());
+        }
+    }
+
+    public void testProjectConfiguration () throws Exception {
+        ConfigurationLoader loader = ConfigurationLoader.getDefault();
+        byte[] content = ("<?xml version=\"1.0\"?>\n" // NOI18N
+            + "<!DOCTYPE module PUBLIC \"-//Checkstyle//DTD Checkstyle Configuration 1.3//EN\"" // NOI18N
+            + " \"https://checkstyle.org/dtds/configuration_1_3.dtd\">\n" // NOI18N
+            + "<module name=\"Checker\"><module name=\"FileLength\"/></module>\n") // NOI18N
+            .getBytes(StandardCharsets.UTF_8);
+
+        File first = FileUtil.normalizeFile(File.createTempFile("checkstyle", ".xml")); // NOI18N
+        File second = FileUtil.normalizeFile(File.createTempFile("checkstyle", ".xml")); // NOI18N
+        try {
+            Files.write(first.toPath(), content);
+            Files.write(second.toPath(), content);
+
+            Configuration global = loader.getConfiguration();
+            Configuration firstConfig = loader.getConfiguration(first.getAbsolutePath());
+            Configuration secondConfig = loader.getConfiguration(second.getAbsolutePath());
+            assertSame(firstConfig, loader.getConfiguration(first.getAbsolutePath()));
+            assertNotSame(global.getCheckstyleConfiguration(), firstConfig.getCheckstyleConfiguration());
+            assertEquals("FileLength", firstConfig.getCheckstyleConfiguration() // NOI18N
+                .getChildren()[0].getName());
+
+            // the same rules are loaded once and share the checkers
+            assertSame(firstConfig.getCheckstyleConfiguration(), secondConfig.getCheckstyleConfiguration());
+            assertEquals(firstConfig.getFingerprint(), secondConfig.getFingerprint());
+            CheckerPool pool = CheckerPool.getDefault();
+            CancellableChecker checker = pool.acquireChecker(firstConfig, null, null);
+            pool.releaseChecker(checker);
+            CancellableChecker shared = pool.acquireChecker(secondConfig, null, null);
+            pool.releaseChecker(shared);
+            assertSame(checker, shared);
+
+            assertTrue(loader.getWatchedFiles().contains(first));
+            assertTrue(loader.getWatchedFiles().contains(second));
+
+            // the settings apply to the project configurations as well
+            CheckstyleSettings.getDefault().setValues(new CheckstyleSettings.Values(Severity.ERROR, null,
+                null, null, null, null, null));
+            Configuration severityConfig = loader.getConfiguration(first.getAbsolutePath());
+            assertEquals(Severity.ERROR, severityConfig.getSeverity());
+            assertSame(firstConfig.getCheckstyleConfiguration(), severityConfig.getCheckstyleConfiguration());
+        } finally {
+            assertTrue(first.delete());
+            assertTrue(second.delete());
+        }
+    }
+
     public void testListener () throws CheckstyleException {
         ConfigurationLoader loader = ConfigurationLoader.getDefault();
         CheckstyleSettings settings = CheckstyleSettings.getDefault();
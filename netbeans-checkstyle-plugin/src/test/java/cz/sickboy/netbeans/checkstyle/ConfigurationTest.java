@@ -42,6 +42,7 @@ public class ConfigurationTest extends TestCase {
         assertNull(config.getCheckstyleConfiguration());
         assertNull(config.getIgnoredPathsPattern());
         assertNull(config.getCheckedPathsPattern());
+        assertNull(config.getFingerprint());
 
         config = new Configuration(null, TEST_CONFIGURATION, null, null, null);
         assertNull(config.getSeverity());
@@ -87,6 +88,9 @@ public class ConfigurationTest extends TestCase {
         assertNull(config.getIgnoredPathsPattern());
         assertEquals(checked, config.getCheckedPathsPattern());
 
+        config = new Configuration(Severity.ERROR, TEST_CONFIGURATION, getClass().getClassLoader(), null, null,
+            "fingerprint");
+        assertEquals("fingerprint", config.getFingerprint());
     }
 
     private static class TestConfiguration implements com.puppycrawl.tools.checkstyle.api.Configuration {
@@ -0,0 +1,57 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Petr Hejl
+ */
+public class MessageTableTest extends TestCase {
+
+    public MessageTableTest (String name) {
+        super(name);
+    }
+
+    public void testIntern () {
+        MessageTable table = new MessageTable(10);
+        String first = new String("Line is longer than 80 characters"); // NOI18N
+        String second = new String("Line is longer than 80 characters"); // NOI18N
+
+        assertSame(first, table.intern(first));
+        assertSame(first, table.intern(second));
+        assertSame(first, table.intern(first));
+        assertNull(table.intern(null));
+        assertEquals(1, table.getSize());
+        assertTrue(table.getSavedBytes() > 0);
+    }
+
+    public void testLimit () {
+        MessageTable table = new MessageTable(2);
+        table.intern("a"); // NOI18N
+        table.intern("b"); // NOI18N
+        assertEquals(2, table.getSize());
+
+        table.intern("c"); // NOI18N
+        assertEquals(1, table.getSize());
+        String c = new String("c"); // NOI18N
+        assertNotSame(c, table.intern(c));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle;
+
+import java.util.regex.Pattern;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Petr Hejl
+ */
+public class PathFilterTest extends TestCase {
+
+    private static final String[] PATHS = {
+        "/project/src/Test.java", // NOI18N
+        "/project/generated/Test.java", // NOI18N
+        "/project/src/TestGenerated.java", // NOI18N
+        "/other/src/Main.java", // NOI18N
+        "/project/src/a.b.java", // NOI18N
+        "", // NOI18N
+    };
+
+    public PathFilterTest (String name) {
+        super(name);
+    }
+
+    public void testMatcher () {
+        assertMatcher(".*/generated/.*|.*Generated\\.java"); // NOI18N
+        assertMatcher("/project/.*"); // NOI18N
+        assertMatcher("/other/src/Main\\.java|.*"); // NOI18N
+        assertMatcher("/other/src/Main.java"); // NOI18N
+        assertMatcher(".*a\\.b\\.java"); // NOI18N
+        assertMatcher(".*src/(Test|Main)\\.java"); // NOI18N
+        assertMatcher("/project/src/\\w+\\.java"); // NOI18N
+        assertMatcher("\\.*"); // NOI18N
+        assertMatcher(""); // NOI18N
+    }
+
+    public void testDecision () {
+        PathFilter filter = new PathFilter(Pattern.compile(".*/generated/.*"), // NOI18N
+            Pattern.compile("/project/.*"), 2); // NOI18N
+        assertTrue(filter.isChecked("/project/src/Test.java")); // NOI18N
+        assertFalse(filter.isChecked("/project/generated/Test.java")); // NOI18N
+        assertEquals(2, filter.getCachedCount());
+        assertFalse(filter.isChecked("/other/src/Main.java")); // NOI18N
+        assertEquals(1, filter.getCachedCount());
+        assertFalse(filter.isChecked("/other/src/Main.java")); // NOI18N
+
+        PathFilter all = new PathFilter(null, null, 2);
+        assertTrue(all.isChecked("/other/src/Main.java")); // NOI18N
+        assertEquals(0, all.getCachedCount());
+    }
+
+    private static void assertMatcher (String regex) {
+        Pattern pattern = Pattern.compile(regex);
+        PathFilter.Matcher matcher = PathFilter.createMatcher(pattern);
+        for (String path : PATHS) {
+            assertEquals(regex + " " + path, pattern.matcher(path).matches(), matcher.matches(path)); // NOI18N
+        }
+    }
+}
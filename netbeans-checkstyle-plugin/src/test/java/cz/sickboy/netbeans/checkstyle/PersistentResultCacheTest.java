@@ -0,0 +1,180 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle;
+
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Petr Hejl
+ */
+public class PersistentResultCacheTest extends TestCase {
+
+    private File directory;
+
+    public PersistentResultCacheTest (String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp () throws Exception {
+        super.setUp();
+        directory = Files.createTempDirectory("checkstyle-cache").toFile(); // NOI18N
+    }
+
+    @Override
+    protected void tearDown () throws Exception {
+        new PersistentResultCache(directory).clear();
+        assertTrue(directory.delete());
+
+        super.tearDown();
+    }
+
+    public void testRoundTrip () throws IOException {
+        PersistentResultCache cache = new PersistentResultCache(directory);
+        File file = new File(directory.getParentFile(), "Test.java"); // NOI18N
+
+        assertNull(cache.get(file, "hash", "fingerprint"));
+
+        List<CheckstyleViolation> violations = Arrays.asList(
+            new CheckstyleViolation(1, 2, SeverityLevel.ERROR, "message 1", "source 1"),
+            new CheckstyleViolation(3, 0, SeverityLevel.INFO, "message 2", null));
+        cache.put(file, "hash", "fingerprint", violations);
+
+        List<CheckstyleViolation> cached = new PersistentResultCache(directory).get(file, "hash", "fingerprint");
+        assertNotNull(cached);
+        assertEquals(2, cached.size());
+        assertEquals(1, cached.get(0).getLine());
+        assertEquals(2, cached.get(0).getColumn());
+        assertEquals(SeverityLevel.ERROR, cached.get(0).getSeverity());
+        assertEquals("message 1", cached.get(0).getMessage());
+        assertEquals("source 1", cached.get(0).getSource());
+        assertEquals(3, cached.get(1).getLine());
+        assertEquals(SeverityLevel.INFO, cached.get(1).getSeverity());
+        assertEquals("message 2", cached.get(1).getMessage());
+
+        assertNull(cache.get(file, "changed", "fingerprint"));
+        assertNull(cache.get(file, "hash", "changed"));
+        assertNull(cache.get(new File(directory.getParentFile(), "Other.java"), "hash", "fingerprint"));
+    }
+
+    public void testLongMessage () {
+        PersistentResultCache cache = new PersistentResultCache(directory);
+        File file = new File(directory.getParentFile(), "Test.java"); // NOI18N
+
+        char[] chars = new char[70000];
+        Arrays.fill(chars, '\u017e');
+        String message = new String(chars);
+        cache.put(file, "hash", "fingerprint", Collections.singletonList( // NOI18N
+            new CheckstyleViolation(1, 0, SeverityLevel.ERROR, message, "source"))); // NOI18N
+
+        List<CheckstyleViolation> cached = cache.get(file, "hash", "fingerprint"); // NOI18N
+        assertNotNull(cached);
+        assertEquals(message, cached.get(0).getMessage());
+    }
+
+    public void testNoFingerprint () {
+        PersistentResultCache cache = new PersistentResultCache(directory);
+        File file = new File(directory.getParentFile(), "Test.java"); // NOI18N
+
+        cache.put(file, "hash", null, Collections.<CheckstyleViolation>emptyList());
+        assertNull(cache.get(file, "hash", null));
+        assertEquals(0, directory.list().length);
+    }
+
+    public void testCorrupted () throws IOException {
+        PersistentResultCache cache = new PersistentResultCache(directory);
+        File file = new File(directory.getParentFile(), "Test.java"); // NOI18N
+
+        cache.put(file, "hash", "fingerprint", Collections.<CheckstyleViolation>emptyList());
+        File[] entries = directory.listFiles();
+        assertEquals(1, entries.length);
+        Files.write(entries[0].toPath(), new byte[] {0, 0, 0, 2, 0});
+
+        assertNull(cache.get(file, "hash", "fingerprint"));
+        assertEquals(0, directory.list().length);
+    }
+
+    public void testStaleFingerprint () {
+        PersistentResultCache cache = new PersistentResultCache(directory);
+        File file = new File(directory.getParentFile(), "Test.java"); // NOI18N
+
+        cache.put(file, "hash", "fingerprint", Collections.<CheckstyleViolation>emptyList());
+        assertNull(cache.get(file, "changed", "fingerprint"));
+        assertEquals(1, directory.list().length);
+
+        assertNull(cache.get(file, "hash", "changed"));
+        assertEquals(0, directory.list().length);
+    }
+
+    public void testTrim () {
+        PersistentResultCache cache = new PersistentResultCache(directory);
+        File first = new File(directory.getParentFile(), "First.java"); // NOI18N
+        File second = new File(directory.getParentFile(), "Second.java"); // NOI18N
+        File third = new File(directory.getParentFile(), "Third.java"); // NOI18N
+
+        cache.put(first, "hash", "fingerprint", Collections.<CheckstyleViolation>emptyList());
+        cache.put(second, "hash", "fingerprint", Collections.<CheckstyleViolation>emptyList());
+        File[] entries = directory.listFiles();
+        assertEquals(2, entries.length);
+        for (File entry : entries) {
+            assertTrue(entry.setLastModified(System.currentTimeMillis() - 60000));
+        }
+
+        // reading makes the first entry the most recently used one
+        assertNotNull(cache.get(first, "hash", "fingerprint"));
+        cache.put(third, "hash", "fingerprint", Collections.<CheckstyleViolation>emptyList());
+        assertEquals(3, directory.list().length);
+
+        new PersistentResultCache(directory, 2).trim();
+        assertEquals(2, directory.list().length);
+        assertNotNull(cache.get(first, "hash", "fingerprint"));
+        assertNull(cache.get(second, "hash", "fingerprint"));
+        assertNotNull(cache.get(third, "hash", "fingerprint"));
+
+        // the writes trim the cache as well
+        PersistentResultCache small = new PersistentResultCache(directory, 1);
+        small.put(second, "hash", "fingerprint", Collections.<CheckstyleViolation>emptyList());
+        assertEquals(1, directory.list().length);
+    }
+
+    public void testTrimTemporary () throws IOException {
+        File file = new File(directory.getParentFile(), "Test.java"); // NOI18N
+        PersistentResultCache cache = new PersistentResultCache(directory, 1);
+        cache.put(file, "hash", "fingerprint", Collections.<CheckstyleViolation>emptyList()); // NOI18N
+
+        File writing = File.createTempFile("entry", ".tmp", directory); // NOI18N
+        assertTrue(writing.setLastModified(System.currentTimeMillis() - 120000));
+        File abandoned = File.createTempFile("entry", ".tmp", directory); // NOI18N
+        assertTrue(abandoned.setLastModified(System.currentTimeMillis() - 2 * 60 * 60 * 1000));
+
+        // the file being written is not the least recently used entry
+        cache.trim();
+        assertTrue(writing.exists());
+        assertFalse(abandoned.exists());
+        assertNotNull(cache.get(file, "hash", "fingerprint")); // NOI18N
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle;
+
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Petr Hejl
+ */
+public class ResultCacheTest extends TestCase {
+
+    private static final File FILE_1 = new File("Test1.java"); // NOI18N
+
+    private static final File FILE_2 = new File("Test2.java"); // NOI18N
+
+    public ResultCacheTest (String name) {
+        super(name);
+    }
+
+    public void testGetPut () {
+        ResultCache cache = new ResultCache(100, null);
+        Configuration config = new Configuration(Severity.ERROR, null, null, null, null, "fingerprint");
+
+        assertNull(cache.get(FILE_1, "hash", config));
+        cache.put(FILE_1, "hash", config, createViolations(2));
+        assertEquals(2, cache.get(FILE_1, "hash", config).size());
+
+        assertNull(cache.get(FILE_1, "changed", config));
+        assertNull(cache.get(FILE_2, "hash", config));
+
+        // different configuration with the same fingerprint
+        Configuration same = new Configuration(Severity.INFO, null, null, null, null, "fingerprint");
+        assertEquals(2, cache.get(FILE_1, "hash", same).size());
+
+        Configuration other = new Configuration(Severity.ERROR, null, null, null, null, null);
+        assertNull(cache.get(FILE_1, "hash", other));
+        cache.put(FILE_1, "hash", other, createViolations(1));
+        assertEquals(1, cache.get(FILE_1, "hash", other).size());
+
+        cache.clear();
+        assertNull(cache.get(FILE_1, "hash", config));
+        assertEquals(0, cache.getRetainedCount());
+    }
+
+    public void testEviction () {
+        ResultCache cache = new ResultCache(10, null);
+        Configuration config = new Configuration(Severity.ERROR, null, null, null, null, "fingerprint");
+
+        cache.put(FILE_1, "hash", config, createViolations(4));
+        cache.put(FILE_2, "hash", config, createViolations(4));
+        assertEquals(10, cache.getRetainedCount());
+
+        // touch the first file so the second one is least recently used
+        assertNotNull(cache.get(FILE_1, "hash", config));
+
+        cache.put(new File("Test3.java"), "hash", config, Collections.<CheckstyleViolation>emptyList());
+        assertNotNull(cache.get(FILE_1, "hash", config));
+        assertNull(cache.get(FILE_2, "hash", config));
+        assertEquals(6, cache.getRetainedCount());
+
+        // too big to be held at all
+        cache.put(FILE_2, "hash", config, createViolations(20));
+        assertNull(cache.get(FILE_2, "hash", config));
+    }
+
+    public void testPersistentFallback () throws Exception {
+        File directory = Files.createTempDirectory("checkstyle-cache").toFile(); // NOI18N
+        PersistentResultCache persistent = new PersistentResultCache(directory);
+        try {
+            Configuration config = new Configuration(Severity.ERROR, null, null, null, null, "fingerprint");
+            new ResultCache(100, persistent).put(FILE_1, "hash", config, createViolations(3));
+
+            ResultCache cache = new ResultCache(100, persistent);
+            assertEquals(3, cache.get(FILE_1, "hash", config).size());
+            assertEquals(4, cache.getRetainedCount());
+        } finally {
+            persistent.clear();
+            assertTrue(directory.delete());
+        }
+    }
+
+    public void testNotPersisted () throws Exception {
+        File directory = Files.createTempDirectory("checkstyle-cache").toFile(); // NOI18N
+        PersistentResultCache persistent = new PersistentResultCache(directory);
+        try {
+            Configuration config = new Configuration(Severity.ERROR, null, null, null, null, "fingerprint");
+            ResultCache cache = new ResultCache(100, persistent);
+            cache.put(FILE_1, "hash", config, createViolations(3), false);
+            assertEquals(3, cache.get(FILE_1, "hash", config).size());
+            assertEquals(0, directory.list().length);
+
+            assertNull(new ResultCache(100, persistent).get(FILE_1, "hash", config));
+        } finally {
+            persistent.clear();
+            assertTrue(directory.delete());
+        }
+    }
+
+    private static List<CheckstyleViolation> createViolations (int count) {
+        List<CheckstyleViolation> violations = new ArrayList<CheckstyleViolation>();
+        for (int i = 0; i < count; i++) {
+            violations.add(new CheckstyleViolation(i + 1, 0, SeverityLevel.ERROR, "message", "source"));
+        }
+        return violations;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle;
+
+import java.io.File;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Petr Hejl
+ */
+public class SourceTextTest extends TestCase {
+
+    public SourceTextTest (String name) {
+        super(name);
+    }
+
+    public void testLines () {
+        File file = new File("Test.java"); // NOI18N
+
+        assertEquals(Arrays.asList("a", "", "b"), SourceText.create(file, "a\n\nb\n").getLines()); // NOI18N
+        assertEquals(Arrays.asList("a", "b"), SourceText.create(file, "a\r\nb").getLines()); // NOI18N
+        assertEquals(Arrays.asList("a", "b", ""), SourceText.create(file, "a\rb\r\r").getLines()); // NOI18N
+        assertTrue(SourceText.create(file, "").getLines().isEmpty()); // NOI18N
+    }
+
+    public void testHash () {
+        File file = new File("Test.java"); // NOI18N
+
+        String hash = SourceText.create(file, "a\nb\n").getHash(); // NOI18N
+        assertEquals(hash, SourceText.create(file, new StringBuilder("a\nb\n")).getHash()); // NOI18N
+        assertFalse(hash.equals(SourceText.create(file, "a\r\nb\r\n").getHash())); // NOI18N
+        assertFalse(hash.equals(SourceText.create(file, "a\nb").getHash())); // NOI18N
+        assertFalse(hash.equals(SourceText.create(file, "a\nb\r").getHash())); // NOI18N
+        assertFalse(hash.equals(SourceText.create(file, "a\nc\n").getHash())); // NOI18N
+        assertFalse(hash.equals(SourceText.create(file, "ab\n").getHash())); // NOI18N
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle.batch;
+
+import cz.sickboy.netbeans.checkstyle.CheckstyleSettings;
+import cz.sickboy.netbeans.checkstyle.CheckstyleViolation;
+import cz.sickboy.netbeans.checkstyle.Configuration;
+import cz.sickboy.netbeans.checkstyle.ConfigurationLoader;
+import cz.sickboy.netbeans.checkstyle.Severity;
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.prefs.Preferences;
+import java.util.regex.Pattern;
+import junit.framework.TestCase;
+import org.openide.util.NbPreferences;
+
+/**
+ *
+ * @author Petr Hejl
+ */
+public class BatchCheckerTest extends TestCase {
+
+    private static final String SOURCE = "package test;\n\npublic class Test {\n    public int a;\n}\n"; // NOI18N
+
+    private File directory;
+
+    public BatchCheckerTest (String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp () throws Exception {
+        super.setUp();
+        directory = Files.createTempDirectory("batch").toFile(); // NOI18N
+        File checked = new File(directory, "src/test"); // NOI18N
+        File ignored = new File(directory, "generated/test"); // NOI18N
+        assertTrue(checked.mkdirs());
+        assertTrue(ignored.mkdirs());
+        Files.write(new File(checked, "Test.java").toPath(), SOURCE.getBytes(StandardCharsets.UTF_8)); // NOI18N
+        Files.write(new File(ignored, "Test.java").toPath(), SOURCE.getBytes(StandardCharsets.UTF_8)); // NOI18N
+        Files.write(new File(checked, "Test.txt").toPath(), SOURCE.getBytes(StandardCharsets.UTF_8)); // NOI18N
+    }
+
+    @Override
+    protected void tearDown () throws Exception {
+        delete(directory);
+        Preferences prefs = NbPreferences.forModule(CheckstyleSettings.class);
+        prefs.removeNode();
+
+        super.tearDown();
+    }
+
+    public void testCheck () throws Exception {
+        Configuration loaded = ConfigurationLoader.getDefault().getConfiguration();
+        Configuration config = new Configuration(Severity.WARNING, loaded.getCheckstyleConfiguration(),
+            loaded.getCheckstyleClassLoader(), Pattern.compile(".*generated.*"), null, // NOI18N
+            loaded.getFingerprint());
+
+        BatchChecker.Result result = new BatchChecker(config, 2, StandardCharsets.UTF_8)
+            .check(Collections.singletonList(directory));
+        assertTrue(result.getFailures().isEmpty());
+        assertEquals(1, result.getViolations().size());
+
+        File file = result.getViolations().firstKey();
+        assertEquals(new File(directory, "src/test/Test.java").getAbsoluteFile(), file); // NOI18N
+        List<CheckstyleViolation> violations = result.getViolations().get(file);
+        assertFalse(violations.isEmpty());
+
+        StringWriter writer = new StringWriter();
+        result.write(writer);
+        assertTrue(writer.toString().contains(file.getPath() + ":4:")); // NOI18N
+        assertTrue(writer.toString().contains("[VisibilityModifier]")); // NOI18N
+    }
+
+    public void testConfiguredCharset () throws Exception {
+        File root = new File(directory, "latin"); // NOI18N
+        assertTrue(root.mkdirs());
+        File configFile = new File(directory, "checks.xml"); // NOI18N
+        Files.write(configFile.toPath(), ("<?xml version=\"1.0\"?>\n" // NOI18N
+            + "<!DOCTYPE module PUBLIC \"-//Checkstyle//DTD Checkstyle Configuration 1.3//EN\"" // NOI18N
+            + " \"https://checkstyle.org/dtds/configuration_1_3.dtd\">\n" // NOI18N
+            + "<module name=\"Checker\">\n" // NOI18N
+            + "  <property name=\"charset\" value=\"ISO-8859-1\"/>\n" // NOI18N
+            + "  <module name=\"RegexpSingleline\">\n" // NOI18N
+            + "    <property name=\"format\" value=\"&#233;\"/>\n" // NOI18N
+            + "  </module>\n" // NOI18N
+            + "</module>\n").getBytes(StandardCharsets.UTF_8)); // NOI18N
+        Files.write(new File(root, "Test.java").toPath(), // NOI18N
+            (SOURCE + "// caf\u00e9\n").getBytes(StandardCharsets.ISO_8859_1)); // NOI18N
+
+        Configuration config = ConfigurationLoader.getDefault().getConfiguration(configFile.getAbsolutePath());
+
+        // read with the charset of the configuration
+        BatchChecker.Result result = new BatchChecker(config, 4, null).check(Collections.singletonList(root));
+        assertTrue(result.getFailures().isEmpty());
+        assertEquals(1, result.getViolations().size());
+        assertEquals(6, result.getViolations().get(result.getViolations().firstKey()).get(0).getLine());
+
+        // the explicit encoding takes precedence
+        result = new BatchChecker(config, 4, StandardCharsets.UTF_8).check(Collections.singletonList(root));
+        assertTrue(result.getFailures().isEmpty());
+        assertTrue(result.getViolations().isEmpty());
+    }
+
+    private static void delete (File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        assertTrue(file.delete());
+    }
+}
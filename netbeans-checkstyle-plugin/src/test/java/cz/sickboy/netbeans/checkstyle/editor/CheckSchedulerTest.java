@@ -0,0 +1,113 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle.editor;
+
+import cz.sickboy.netbeans.checkstyle.CancellableChecker;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+
+/**
+ *
+ * @author Petr Hejl
+ */
+public class CheckSchedulerTest extends TestCase {
+
+    private FileObject fileObject;
+
+    public CheckSchedulerTest (String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp () throws Exception {
+        super.setUp();
+        fileObject = FileUtil.toFileObject(FileUtil.normalizeFile(new File(System.getProperty("java.io.tmpdir"))));
+    }
+
+    public void testCoalesce () throws Exception {
+        CheckScheduler scheduler = new CheckScheduler(200, 200);
+        final List<Integer> runs = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        for (int i = 0; i < 5; i++) {
+            final int index = i;
+            scheduler.schedule(fileObject, new CheckScheduler.Job() {
+
+                @Override
+                public void run (CancellableChecker.CancellationHook hook) {
+                    runs.add(index);
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(300);
+        assertEquals(Collections.singletonList(4), runs);
+        assertFalse(scheduler.isPending(fileObject));
+    }
+
+    public void testCancelRunning () throws Exception {
+        CheckScheduler scheduler = new CheckScheduler(0, 0);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+        final boolean[] cancelled = new boolean[1];
+
+        CheckScheduler.Request request = scheduler.schedule(fileObject, new CheckScheduler.Job() {
+
+            @Override
+            public void run (CancellableChecker.CancellationHook hook) {
+                started.countDown();
+                while (!hook.isCanceled()) {
+                    Thread.yield();
+                }
+                cancelled[0] = true;
+                finished.countDown();
+            }
+        });
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertFalse(request.isCanceled());
+        scheduler.cancel(fileObject);
+        assertTrue(request.isCanceled());
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertTrue(cancelled[0]);
+    }
+
+    public void testAdaptiveDelay () {
+        CheckScheduler scheduler = new CheckScheduler(100, 2000);
+        assertEquals(100, scheduler.getDelay(fileObject));
+
+        scheduler.setDuration(fileObject, 750);
+        assertEquals(750, scheduler.getDelay(fileObject));
+
+        scheduler.setDuration(fileObject, 10);
+        assertEquals(100, scheduler.getDelay(fileObject));
+
+        scheduler.setDuration(fileObject, 60000);
+        assertEquals(2000, scheduler.getDelay(fileObject));
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle.editor;
+
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.StyledDocument;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Petr Hejl
+ */
+public class CheckstyleAnnotationContainerTest extends TestCase {
+
+    private StyledDocument document;
+
+    public CheckstyleAnnotationContainerTest (String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp () throws Exception {
+        super.setUp();
+        document = new DefaultStyledDocument();
+        document.insertString(0, "first\nsecond\nthird\n", null); // NOI18N
+    }
+
+    public void testUpdate () throws BadLocationException {
+        CheckstyleAnnotation first = createAnnotation(0, "a", SeverityLevel.WARNING); // NOI18N
+        CheckstyleAnnotation second = createAnnotation(6, "b", SeverityLevel.WARNING); // NOI18N
+        CheckstyleAnnotation third = createAnnotation(13, "c", SeverityLevel.ERROR); // NOI18N
+
+        List<CheckstyleAnnotation> attached = CheckstyleAnnotationContainer.update(
+            Collections.<CheckstyleAnnotation>emptyList(), Arrays.asList(first, second, third));
+        assertEquals(Arrays.asList(first, second, third), attached);
+
+        CheckstyleAnnotation sameFirst = createAnnotation(0, "a", SeverityLevel.WARNING); // NOI18N
+        CheckstyleAnnotation otherSecond = createAnnotation(6, "b", SeverityLevel.ERROR); // NOI18N
+        CheckstyleAnnotation otherThird = createAnnotation(6, "c", SeverityLevel.ERROR); // NOI18N
+
+        List<CheckstyleAnnotation> updated = CheckstyleAnnotationContainer.update(
+            attached, Arrays.asList(sameFirst, otherSecond, otherThird));
+        assertEquals(3, updated.size());
+        assertSame(first, updated.get(0));
+        assertTrue(updated.contains(otherSecond));
+        assertTrue(updated.contains(otherThird));
+        assertFalse(updated.contains(second));
+        assertFalse(updated.contains(third));
+    }
+
+    public void testUpdateMovedText () throws BadLocationException {
+        CheckstyleAnnotation second = createAnnotation(6, "b", SeverityLevel.WARNING); // NOI18N
+        List<CheckstyleAnnotation> attached = CheckstyleAnnotationContainer.update(
+            Collections.<CheckstyleAnnotation>emptyList(), Collections.singletonList(second));
+
+        // the attached annotation moves to the third line with the text
+        document.insertString(0, "inserted\n", null); // NOI18N
+
+        CheckstyleAnnotation moved = createAnnotation(15, "b", SeverityLevel.WARNING); // NOI18N
+        List<CheckstyleAnnotation> updated = CheckstyleAnnotationContainer.update(
+            attached, Collections.singletonList(moved));
+        assertSame(second, updated.get(0));
+
+        CheckstyleAnnotation stale = createAnnotation(6, "b", SeverityLevel.WARNING); // NOI18N
+        updated = CheckstyleAnnotationContainer.update(
+            new ArrayList<CheckstyleAnnotation>(updated), Collections.singletonList(stale));
+        assertSame(stale, updated.get(0));
+    }
+
+    private CheckstyleAnnotation createAnnotation (int offset, String message, SeverityLevel severity)
+        throws BadLocationException
+    {
+        return new CheckstyleAnnotation(document, document.createPosition(offset), message, severity);
+    }
+}
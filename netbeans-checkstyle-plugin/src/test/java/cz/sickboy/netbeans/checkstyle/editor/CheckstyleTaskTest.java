@@ -18,9 +18,26 @@
  */
 package cz.sickboy.netbeans.checkstyle.editor;
 
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+import cz.sickboy.netbeans.checkstyle.CancellableChecker;
+import cz.sickboy.netbeans.checkstyle.CheckstyleSettings;
+import cz.sickboy.netbeans.checkstyle.CheckstyleViolation;
+import cz.sickboy.netbeans.checkstyle.Configuration;
+import cz.sickboy.netbeans.checkstyle.ConfigurationLoader;
+import cz.sickboy.netbeans.checkstyle.ResultCache;
+import cz.sickboy.netbeans.checkstyle.Severity;
+import cz.sickboy.netbeans.checkstyle.SourceText;
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.prefs.Preferences;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.StyledDocument;
 import junit.framework.TestCase;
 import org.openide.filesystems.FileUtil;
+import org.openide.util.NbPreferences;
 
 /**
  *
@@ -48,4 +65,145 @@ public class CheckstyleTaskTest extends TestCase {
         task.run(null);
         assertFalse(task.isCanceled());
     }
+
+    public void testCheckDirectly () throws Exception {
+        String text = "package test;\n\npublic class Test {\n    public int a;\n}\n"; // NOI18N
+        File file = FileUtil.normalizeFile(File.createTempFile("Test", ".java")); // NOI18N
+        try {
+            Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+            CheckstyleTask task = new CheckstyleTask(FileUtil.toFileObject(file));
+            Configuration config = ConfigurationLoader.getDefault().getConfiguration();
+            ResultCache cache = ResultCache.getDefault();
+
+            StyledDocument document = new DefaultStyledDocument();
+            document.insertString(0, text, null);
+
+            SourceText source = SourceText.create(file, text);
+            task.checkDirectly(task.init(), source, document, config, false);
+            assertFalse(cache.get(file, CheckstyleTask.getCacheHash(source, false), config).isEmpty());
+
+            // the cancelled check leaves no results behind
+            SourceText cancelled = SourceText.create(file, text + "\n"); // NOI18N
+            long started = task.init();
+            task.cancel();
+            task.checkDirectly(started, cancelled, document, config, false);
+            assertNull(cache.get(file, CheckstyleTask.getCacheHash(cancelled, false), config));
+
+            // so does the check of the interrupted thread
+            SourceText interrupted = SourceText.create(file, text + "\n\n"); // NOI18N
+            started = task.init();
+            Thread.currentThread().interrupt();
+            try {
+                task.checkDirectly(started, interrupted, document, config, false);
+            } finally {
+                assertTrue(Thread.interrupted());
+            }
+            assertNull(cache.get(file, CheckstyleTask.getCacheHash(interrupted, false), config));
+        } finally {
+            assertTrue(file.delete());
+            Preferences prefs = NbPreferences.forModule(CheckstyleSettings.class);
+            prefs.removeNode();
+        }
+    }
+
+    public void testModifiedDocument () throws Exception {
+        String text = "package test;\n\npublic class Test {\n    public int a;\n}"; // NOI18N
+        File file = FileUtil.normalizeFile(File.createTempFile("Test", ".java")); // NOI18N
+        try {
+            // the saved file lacks the last line terminator, the document does not
+            Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+            CheckstyleTask task = new CheckstyleTask(FileUtil.toFileObject(file));
+            Configuration config = ConfigurationLoader.getDefault().getConfiguration();
+
+            StyledDocument document = new DefaultStyledDocument();
+            document.insertString(0, text + "\n", null); // NOI18N
+
+            SourceText source = SourceText.create(file, text + "\n"); // NOI18N
+            task.checkDirectly(task.init(), source, document, config, false);
+            List<CheckstyleViolation> violations = ResultCache.getDefault().get(file,
+                CheckstyleTask.getCacheHash(source, false), config);
+            assertFalse(violations.isEmpty());
+            for (CheckstyleViolation violation : violations) {
+                assertFalse(CancellableChecker.isReadFromDisk(violation));
+            }
+            assertNull(ResultCache.getDefault().get(file, source.getHash(), config));
+        } finally {
+            assertTrue(file.delete());
+            Preferences prefs = NbPreferences.forModule(CheckstyleSettings.class);
+            prefs.removeNode();
+        }
+    }
+
+    public void testTextViolations () {
+        CheckstyleViolation text = new CheckstyleViolation(1, 0, SeverityLevel.ERROR, "a", // NOI18N
+            "com.puppycrawl.tools.checkstyle.checks.whitespace.FileTabCharacterCheck"); // NOI18N
+        CheckstyleViolation disk = new CheckstyleViolation(1, 0, SeverityLevel.ERROR, "b", // NOI18N
+            "com.puppycrawl.tools.checkstyle.checks.NewlineAtEndOfFileCheck"); // NOI18N
+
+        assertEquals(Arrays.asList(text), CheckstyleTask.getTextViolations(Arrays.asList(text, disk)));
+    }
+
+    public void testCreateAnnotations () throws Exception {
+        StyledDocument document = new DefaultStyledDocument();
+        document.insertString(0, "first\nsecond\nthird\n", null); // NOI18N
+
+        List<CheckstyleViolation> violations = Arrays.asList(
+            new CheckstyleViolation(2, 0, SeverityLevel.WARNING, "a", null), // NOI18N
+            new CheckstyleViolation(2, 3, SeverityLevel.ERROR, "b", null), // NOI18N
+            new CheckstyleViolation(3, 0, SeverityLevel.INFO, "c", null), // NOI18N
+            new CheckstyleViolation(4, 0, SeverityLevel.ERROR, "d", null), // NOI18N
+            new CheckstyleViolation(10, 0, SeverityLevel.ERROR, "e", null)); // NOI18N
+
+        List<CheckstyleAnnotation> annotations = CheckstyleTask.createAnnotations(
+            document, violations, Severity.WARNING);
+        assertEquals(2, annotations.size());
+        assertEquals("a", annotations.get(0).getShortDescription()); // NOI18N
+        assertEquals(6, annotations.get(0).getPosition().getOffset());
+        assertEquals("b", annotations.get(1).getShortDescription()); // NOI18N
+        assertSame(annotations.get(0).getPosition(), annotations.get(1).getPosition());
+
+        assertEquals(3, CheckstyleTask.createAnnotations(document, violations, Severity.IGNORE).size());
+    }
+
+    public void testAnnotationLimit () throws Exception {
+        StyledDocument document = new DefaultStyledDocument();
+        document.insertString(0, "first\nsecond\nthird\n", null); // NOI18N
+
+        List<CheckstyleViolation> violations = Arrays.asList(
+            new CheckstyleViolation(1, 0, SeverityLevel.WARNING, "a", null), // NOI18N
+            new CheckstyleViolation(2, 0, SeverityLevel.WARNING, "b", null), // NOI18N
+            new CheckstyleViolation(2, 3, SeverityLevel.INFO, "c", null), // NOI18N
+            new CheckstyleViolation(3, 0, SeverityLevel.ERROR, "d", null)); // NOI18N
+
+        List<CheckstyleAnnotation> annotations = CheckstyleTask.createAnnotations(
+            document, violations, Severity.IGNORE, 2, false);
+        assertEquals(3, annotations.size());
+        assertEquals("a", annotations.get(0).getShortDescription()); // NOI18N
+        assertEquals("b", annotations.get(1).getShortDescription()); // NOI18N
+        assertSame(annotations.get(1).getPosition(), annotations.get(2).getPosition());
+        assertEquals(SeverityLevel.ERROR, annotations.get(2).getSeverity());
+        assertTrue(annotations.get(2).getShortDescription().startsWith("2 ")); // NOI18N
+    }
+
+    public void testAggregatedAnnotations () throws Exception {
+        StyledDocument document = new DefaultStyledDocument();
+        document.insertString(0, "first\nsecond\nthird\n", null); // NOI18N
+
+        List<CheckstyleViolation> violations = Arrays.asList(
+            new CheckstyleViolation(1, 0, SeverityLevel.WARNING, "a", null), // NOI18N
+            new CheckstyleViolation(2, 0, SeverityLevel.INFO, "b", null), // NOI18N
+            new CheckstyleViolation(1, 3, SeverityLevel.ERROR, "c", null), // NOI18N
+            new CheckstyleViolation(3, 0, SeverityLevel.WARNING, "d", null), // NOI18N
+            new CheckstyleViolation(2, 3, SeverityLevel.WARNING, "e", null)); // NOI18N
+
+        List<CheckstyleAnnotation> annotations = CheckstyleTask.createAnnotations(
+            document, violations, Severity.IGNORE, 2, true);
+        assertEquals(3, annotations.size());
+        assertEquals("a\nc", annotations.get(0).getShortDescription()); // NOI18N
+        assertEquals(SeverityLevel.ERROR, annotations.get(0).getSeverity());
+        assertEquals("b\ne", annotations.get(1).getShortDescription()); // NOI18N
+        assertEquals(SeverityLevel.WARNING, annotations.get(1).getSeverity());
+        assertEquals(13, annotations.get(2).getPosition().getOffset());
+        assertTrue(annotations.get(2).getShortDescription().startsWith("1 ")); // NOI18N
+    }
 }
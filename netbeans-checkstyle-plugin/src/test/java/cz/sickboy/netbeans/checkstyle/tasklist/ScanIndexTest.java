@@ -0,0 +1,129 @@
+/*
+ * Checkstyle Beans: A NetBeans checkstyle integration plugin.
+ * Copyright (C) 2007-1013  Petr Hejl
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package cz.sickboy.netbeans.checkstyle.tasklist;
+
+import cz.sickboy.netbeans.checkstyle.Configuration;
+import cz.sickboy.netbeans.checkstyle.Severity;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.regex.Pattern;
+import junit.framework.TestCase;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+
+/**
+ *
+ * @author Petr Hejl
+ */
+public class ScanIndexTest extends TestCase {
+
+    public ScanIndexTest (String name) {
+        super(name);
+    }
+
+    public void testContentHash () throws Exception {
+        File file = File.createTempFile("Test", ".java"); // NOI18N
+        try {
+            Files.write(file.toPath(), "class Test {}".getBytes(StandardCharsets.UTF_8)); // NOI18N
+            Configuration config = new Configuration(Severity.ERROR, null, null, null, null, "fingerprint"); // NOI18N
+            Configuration same = new Configuration(Severity.INFO, null, null, null, null, "fingerprint"); // NOI18N
+            Configuration other = new Configuration(Severity.ERROR, null, null, null, null, null);
+
+            ScanIndex index = new ScanIndex(10);
+            assertNull(index.getContentHash(file, config));
+            index.put(file, file.lastModified(), file.length(), config, "hash"); // NOI18N
+            assertEquals("hash", index.getContentHash(file, config)); // NOI18N
+            assertEquals("hash", index.getContentHash(file, same)); // NOI18N
+            assertNull(index.getContentHash(file, other));
+
+            // unknown equivalence, not even the same instance is trusted
+            index.put(file, file.lastModified(), file.length(), other, "hash"); // NOI18N
+            assertNull(index.getContentHash(file, other));
+            assertNull(index.getContentHash(file, config));
+
+            Files.write(file.toPath(), "class Test { }".getBytes(StandardCharsets.UTF_8)); // NOI18N
+            assertNull(index.getContentHash(file, config));
+
+            index.put(file, file.lastModified(), file.length(), config, "changed"); // NOI18N
+            index.clear();
+            assertNull(index.getContentHash(file, config));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    public void testSameTasks () {
+        Configuration config = new Configuration(Severity.ERROR, null, null,
+            Pattern.compile(".*/generated/.*"), null, "fingerprint"); // NOI18N
+
+        assertTrue(ScanIndex.hasSameTasks(config, new Configuration(Severity.ERROR, null, null,
+            Pattern.compile(".*/generated/.*"), null, "fingerprint"))); // NOI18N
+        assertFalse(ScanIndex.hasSameTasks(config, new Configuration(Severity.WARNING, null, null,
+            Pattern.compile(".*/generated/.*"), null, "fingerprint"))); // NOI18N
+        assertFalse(ScanIndex.hasSameTasks(config, new Configuration(Severity.ERROR, null, null,
+            null, null, "fingerprint"))); // NOI18N
+        assertFalse(ScanIndex.hasSameTasks(config, new Configuration(Severity.ERROR, null, null,
+            Pattern.compile(".*/generated/.*"), null, "changed"))); // NOI18N
+
+        Configuration uncached = new Configuration(Severity.ERROR, null, null, null, null, null);
+        assertTrue(ScanIndex.hasSameTasks(uncached, uncached));
+        assertFalse(ScanIndex.hasSameResults(uncached,
+            new Configuration(Severity.ERROR, null, null, null, null, null)));
+    }
+
+    public void testSubsequentChanges () throws Exception {
+        File file = FileUtil.normalizeFile(File.createTempFile("Test", ".java")); // NOI18N
+        try {
+            final Configuration[] current = {new Configuration(Severity.ERROR, null, null, null, null, "first")}; // NOI18N
+            ScanIndex index = new ScanIndex(10) {
+
+                @Override
+                Object getOwner (FileObject fileObject) {
+                    return fileObject.getParent();
+                }
+
+                @Override
+                Configuration getConfiguration (FileObject fileObject) {
+                    return current[0];
+                }
+            };
+            FileObject fileObject = FileUtil.toFileObject(file);
+            index.use(current[0], fileObject, file);
+
+            current[0] = new Configuration(Severity.ERROR, null, null, null, null, "first"); // NOI18N
+            assertFalse(index.isAffected());
+
+            current[0] = new Configuration(Severity.WARNING, null, null, null, null, "first"); // NOI18N
+            assertTrue(index.isAffected());
+            // the rescan
+            index.use(current[0], fileObject, file);
+
+            current[0] = new Configuration(Severity.WARNING, null, null, null, null, "second"); // NOI18N
+            assertTrue(index.isAffected());
+            index.use(current[0], fileObject, file);
+
+            // the configurations replaced by the changes are not remembered
+            current[0] = new Configuration(Severity.WARNING, null, null, null, null, "second"); // NOI18N
+            assertFalse(index.isAffected());
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+}